@@ -0,0 +1,160 @@
+package com.brennaswitzer.cookbook.repositories;
+
+import com.brennaswitzer.cookbook.domain.Ingredient;
+import com.brennaswitzer.cookbook.util.SampleItems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * I measure ingredient "name contains" lookups in Postgres, against
+ * {@code dictionarySize} ingredients: the {@code canonical_name like '%x%'}
+ * the repositories now run, which can use the trigram index, and the old
+ * {@code lower(name) like '%x%'}, which can't. Setup checks that the first
+ * query's plan actually uses the index, so the comparison means something.
+ * <p>
+ * The ingredients go in a temporary table, indexed like {@code ingredient},
+ * so nothing is left behind. The database is the one in the same
+ * {@code RDS_*} environment variables the app uses; it must have (or be able
+ * to create) the {@code pg_trgm} extension.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngredientNameSearchBenchmark {
+
+    private static final String[] TERMS = {
+            "tomato", "chick", "garlic", "cream", "pepper", "onion",
+    };
+
+    private static final String TRIGRAM_INDEX = "bench_ingredient_canonical_name_trgm";
+
+    private static final String CANONICAL_NAME_QUERY = "select id, name\n" +
+            "from bench_ingredient\n" +
+            "where canonical_name like ? escape '\\'\n" +
+            "order by id";
+
+    private static final String LOWER_NAME_QUERY = "select id, name\n" +
+            "from bench_ingredient\n" +
+            "where lower(name) like ?\n" +
+            "order by id";
+
+    @Param({ "100000" })
+    public int dictionarySize;
+
+    private Connection connection;
+
+    private PreparedStatement byCanonicalName;
+
+    private PreparedStatement byLowerName;
+
+    private int termIndex;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                "jdbc:postgresql://" + env("RDS_HOSTNAME", "localhost")
+                        + ":" + env("RDS_PORT", "5432")
+                        + "/" + env("RDS_DB_NAME", "foodinger"),
+                env("RDS_USERNAME", "foodinger"),
+                env("RDS_PASSWORD", ""));
+        try (Statement st = connection.createStatement()) {
+            st.execute("create extension if not exists pg_trgm");
+            st.execute("create temporary table bench_ingredient (\n" +
+                    "    id bigint primary key,\n" +
+                    "    name varchar not null,\n" +
+                    "    canonical_name varchar not null\n" +
+                    ")");
+        }
+        List<String> names = SampleItems.dictionary(dictionarySize);
+        try (PreparedStatement ps = connection.prepareStatement("insert into bench_ingredient\n" +
+                "    (id, name, canonical_name)\n" +
+                "values (?, ?, ?)")) {
+            long id = 1000;
+            for (String name : names) {
+                ps.setLong(1, ++id);
+                ps.setString(2, name);
+                ps.setString(3, Ingredient.canonicalizeName(name));
+                ps.addBatch();
+                if (id % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("create index " + TRIGRAM_INDEX + " on bench_ingredient\n" +
+                    "    using gin (canonical_name gin_trgm_ops)");
+            st.execute("analyze bench_ingredient");
+        }
+        String plan = explain(CANONICAL_NAME_QUERY);
+        if (!plan.contains(TRIGRAM_INDEX)) {
+            throw new IllegalStateException("The canonical name query doesn't use " + TRIGRAM_INDEX + ":\n" + plan);
+        }
+        byCanonicalName = connection.prepareStatement(CANONICAL_NAME_QUERY);
+        byLowerName = connection.prepareStatement(LOWER_NAME_QUERY);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        // takes the temporary table with it
+        connection.close();
+    }
+
+    @Benchmark
+    public int canonicalNameTrigramIndex() throws SQLException {
+        return countMatches(byCanonicalName);
+    }
+
+    @Benchmark
+    public int lowerNameScan() throws SQLException {
+        return countMatches(byLowerName);
+    }
+
+    private int countMatches(PreparedStatement ps) throws SQLException {
+        ps.setString(1, '%' + TERMS[termIndex++ % TERMS.length] + '%');
+        int count = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) count++;
+        }
+        return count;
+    }
+
+    private String explain(String query) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement ps = connection.prepareStatement("explain " + query)) {
+            ps.setString(1, '%' + TERMS[0] + '%');
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Ingredient;
+import com.brennaswitzer.cookbook.domain.PantryItem;
+import com.brennaswitzer.cookbook.domain.UnitOfMeasure;
+import com.brennaswitzer.cookbook.payload.RecognizedItem;
+import com.brennaswitzer.cookbook.payload.RecognizedItem.Range;
+import com.brennaswitzer.cookbook.repositories.PantryItemRepository;
+import com.brennaswitzer.cookbook.repositories.RecipeRepository;
+import com.brennaswitzer.cookbook.security.UserPrincipal;
+import com.brennaswitzer.cookbook.util.EnglishUtils;
+import com.brennaswitzer.cookbook.util.PhraseMatcher;
+import com.brennaswitzer.cookbook.util.SampleItems;
+import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * I measure item recognition end-to-end, per raw line of
+ * {@link SampleItems#LINES}, against a pantry of {@code dictionarySize}
+ * ingredients. There's no database: the services are wired by hand, with the
+ * repositories and {@link UnitResolver} stubbed out, so only the recognition
+ * itself (and the in-memory {@link IngredientIndex}) is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ItemServiceBenchmark {
+
+    private static final Long USER_ID = 1L;
+
+    private static final String[] UNITS = {
+            "cup", "tsp", "tbsp", "oz", "lb", "clove", "can", "bunch", "pinch",
+    };
+
+    @Param({ "10000", "100000" })
+    public int dictionarySize;
+
+    private List<String> names;
+
+    private ItemService itemService;
+
+    private ItemService cachingItemService;
+
+    private List<Iterable<Range>> implicitWords;
+
+    @Setup
+    public void setup() {
+        names = SampleItems.dictionary(dictionarySize);
+        Map<String, PantryItem> pantryItems = new HashMap<>();
+        List<Object[]> idsAndNames = new ArrayList<>(names.size());
+        long id = 1000;
+        for (String name : names) {
+            PantryItem it = new PantryItem(name);
+            it.setId(++id);
+            pantryItems.put(Ingredient.canonicalizeName(name), it);
+            idsAndNames.add(new Object[] { it.getId(), name });
+        }
+        Map<String, UnitOfMeasure> units = new HashMap<>();
+        for (String name : UNITS) {
+            UnitOfMeasure uom = new UnitOfMeasure(name);
+            uom.setId(++id);
+            units.put(name, uom);
+        }
+
+        UserPrincipalAccess principalAccess = new UserPrincipalAccess() {
+            @Override
+            public Long getId() {
+                return USER_ID;
+            }
+
+            @Override
+            public UserPrincipal getUserPrincipal() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        // a pass-through cache, so every recognition is measured
+        RecognitionCache noCache = new RecognitionCache() {
+            @Override
+            public RecognizedItem get(Long userId, String raw, int cursor, boolean withSuggestions, Supplier<RecognizedItem> recognizer) {
+                return recognizer.get();
+            }
+        };
+        IngredientIndex index = new IngredientIndex();
+        ReflectionTestUtils.setField(index, "pantryItemRepository",
+                stub(PantryItemRepository.class, "findAllIdAndName", idsAndNames));
+        ReflectionTestUtils.setField(index, "recipeRepository",
+                stub(RecipeRepository.class, "findAllIdAndNameByOwnerId", Collections.emptyList()));
+        ReflectionTestUtils.setField(index, "recognitionCache", noCache);
+        IngredientService ingredientService = new IngredientService() {
+            @Override
+            public Map<String, Ingredient> findIngredientsByNames(Collection<String> names) {
+                Map<String, Ingredient> result = new HashMap<>();
+                for (String name : names) {
+                    PantryItem it = pantryItems.get(Ingredient.canonicalizeName(
+                            EnglishUtils.unpluralize(name)));
+                    if (it != null) result.put(name, it);
+                }
+                return result;
+            }
+        };
+        ReflectionTestUtils.setField(ingredientService, "ingredientIndex", index);
+        ReflectionTestUtils.setField(ingredientService, "principalAccess", principalAccess);
+        UnitResolver unitResolver = new UnitResolver() {
+            @Override
+            public Optional<UnitOfMeasure> find(String name) {
+                if (name == null) return Optional.empty();
+                return Optional.ofNullable(units.get(
+                        EnglishUtils.unpluralize(name.trim()).toLowerCase()));
+            }
+        };
+
+        itemService = itemService(ingredientService, index, unitResolver, noCache, principalAccess);
+        cachingItemService = itemService(ingredientService, index, unitResolver, new RecognitionCache(), principalAccess);
+
+        implicitWords = new ArrayList<>(SampleItems.LINE_COUNT);
+        for (String line : SampleItems.LINES) {
+            implicitWords.add(new RecognizedItem(line).unrecognizedWords());
+        }
+
+        // load the index and build its matcher outside the measurements
+        index.getPhraseMatchers(USER_ID);
+    }
+
+    private static ItemService itemService(IngredientService ingredientService, IngredientIndex index, UnitResolver unitResolver, RecognitionCache cache, UserPrincipalAccess principalAccess) {
+        ItemService service = new ItemService();
+        ReflectionTestUtils.setField(service, "ingredientService", ingredientService);
+        ReflectionTestUtils.setField(service, "ingredientIndex", index);
+        ReflectionTestUtils.setField(service, "unitResolver", unitResolver);
+        ReflectionTestUtils.setField(service, "recognitionCache", cache);
+        ReflectionTestUtils.setField(service, "recognitionSessions", new RecognitionSessions());
+        ReflectionTestUtils.setField(service, "principalAccess", principalAccess);
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> iface, String methodName, Object result) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(this, args);
+                }
+                if (method.getName().equals(methodName)) return result;
+                throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (T) Proxy.newProxyInstance(
+                iface.getClassLoader(),
+                new Class<?>[] { iface },
+                handler);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void recognizeItem(Blackhole bh) {
+        for (String line : SampleItems.LINES) {
+            bh.consume(itemService.recognizeItem(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void recognizeItemCached(Blackhole bh) {
+        for (String line : SampleItems.LINES) {
+            bh.consume(cachingItemService.recognizeItem(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void recognizeItems(Blackhole bh) {
+        bh.consume(itemService.recognizeItems(Arrays.asList(SampleItems.LINES)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void multiPass(Blackhole bh) {
+        for (int i = 0; i < SampleItems.LINE_COUNT; i++) {
+            bh.consume(itemService.multiPass(implicitWords.get(i), SampleItems.LINES[i]));
+        }
+    }
+
+    /**
+     * The phrase matcher is rebuilt after any pantry item changes, so this is
+     * what the first recognition after a change pays.
+     */
+    @Benchmark
+    public PhraseMatcher<IngredientIndex.Entry> buildPhraseMatcher() {
+        PhraseMatcher<IngredientIndex.Entry> m = new PhraseMatcher<>();
+        long id = 0;
+        for (String name : names) {
+            m.add(name, new IngredientIndex.Entry(++id, name));
+        }
+        return m.build();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * I measure the string-level pieces of item recognition, per raw line of
+ * {@link SampleItems#LINES}. The {@link EnglishUtils} ones are per pass over
+ * every word of every line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParsingBenchmark {
+
+    private static final String[] WORDS;
+
+    static {
+        List<String> words = new ArrayList<>();
+        for (String line : SampleItems.LINES) {
+            for (String w : line.split(" ")) {
+                words.add(w);
+            }
+        }
+        WORDS = words.toArray(new String[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void dissect(Blackhole bh) {
+        for (String line : SampleItems.LINES) {
+            bh.consume(RawUtils.dissect(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleItems.LINE_COUNT)
+    public void parseNumberWithRange(Blackhole bh) {
+        for (String line : SampleItems.LINES) {
+            bh.consume(NumberUtils.parseNumberWithRange(line));
+        }
+    }
+
+    @Benchmark
+    public void canonicalize(Blackhole bh) {
+        for (String w : WORDS) {
+            bh.consume(EnglishUtils.canonicalize(w));
+        }
+    }
+
+    @Benchmark
+    public void unpluralize(Blackhole bh) {
+        for (String w : WORDS) {
+            bh.consume(EnglishUtils.unpluralize(w));
+        }
+    }
+
+}
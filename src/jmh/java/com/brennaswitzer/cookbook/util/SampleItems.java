@@ -0,0 +1,105 @@
+package com.brennaswitzer.cookbook.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * I am sample data for benchmarks: raw item lines as they're typed into
+ * recipes and shopping lists, and a dictionary of ingredient names of any
+ * size, built deterministically from common words.
+ */
+public final class SampleItems {
+
+    // for @OperationsPerInvocation, which needs a constant
+    public static final int LINE_COUNT = 20;
+
+    public static final String[] LINES = {
+            "1 cup flour",
+            "2 1/2 _cups_ \"all-purpose flour\", sifted",
+            "3 large eggs, beaten",
+            "1/4 tsp salt",
+            "1 (14 oz) can diced tomatoes",
+            "\u00bd lb ground beef",
+            "2 tbsp olive oil",
+            "1 and 1/2 cups \"chicken stock\"",
+            "4 cloves garlic, minced",
+            "salt and pepper to taste",
+            "1 bunch fresh cilantro, chopped",
+            "3 - 4 medium potatoes, peeled and cubed",
+            "0.5 cup unsalted butter, softened",
+            "1 1/3 cups whole milk",
+            "2 _tbsp_ \"brown sugar\"",
+            "6 oz smoked salmon",
+            "1 red onion, thinly sliced",
+            "pinch of ground nutmeg",
+            "3 cups basmati rice",
+            "1 tsp ground cumin",
+    };
+
+    // these are in LINES, so they come first
+    private static final String[] COMMON_NAMES = {
+            "flour", "all-purpose flour", "egg", "salt", "diced tomato",
+            "ground beef", "olive oil", "chicken stock", "garlic", "pepper",
+            "cilantro", "potato", "unsalted butter", "whole milk",
+            "brown sugar", "smoked salmon", "red onion", "ground nutmeg",
+            "basmati rice", "ground cumin",
+    };
+
+    private static final String[] MODIFIERS = {
+            "fresh", "dried", "ground", "smoked", "roasted", "toasted", "raw",
+            "frozen", "canned", "organic", "red", "green", "yellow", "white",
+            "black", "brown", "sweet", "sour", "spicy", "hot", "mild", "baby",
+            "wild", "whole", "sliced", "diced", "chopped", "minced", "grated",
+            "shredded", "crushed", "pickled", "salted", "unsalted", "low-fat",
+            "light", "dark", "aged", "sharp", "creamy", "crispy", "grilled",
+            "braised", "caramelized", "candied", "coarse", "fine", "italian",
+            "mexican", "thai",
+    };
+
+    private static final String[] FOODS = {
+            "flour", "sugar", "butter", "milk", "cream", "cheese", "yogurt",
+            "egg", "chicken", "beef", "pork", "lamb", "turkey", "salmon", "tuna",
+            "shrimp", "rice", "pasta", "noodle", "bread", "tortilla", "bean",
+            "lentil", "chickpea", "tomato", "potato", "onion", "garlic",
+            "ginger", "carrot", "celery", "pepper", "chile", "spinach", "kale",
+            "lettuce", "cabbage", "mushroom", "zucchini", "squash", "corn",
+            "pea", "apple", "lemon", "lime", "orange", "banana", "berry",
+            "almond", "walnut", "peanut", "oat", "honey", "vinegar", "oil",
+            "stock", "sauce", "paste", "mustard", "cumin",
+    };
+
+    /**
+     * I return {@code size} distinct ingredient names, always the same ones
+     * for a given size. They're made of a food and up to two modifiers, so
+     * many share words, as real ingredient names do.
+     */
+    public static List<String> dictionary(int size) {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, COMMON_NAMES);
+        List<String> candidates = new ArrayList<>();
+        for (String food : FOODS) {
+            candidates.add(food);
+            for (String m1 : MODIFIERS) {
+                candidates.add(m1 + " " + food);
+                for (String m2 : MODIFIERS) {
+                    if (m1.equals(m2)) continue;
+                    candidates.add(m1 + " " + m2 + " " + food);
+                }
+            }
+        }
+        Collections.shuffle(candidates, new Random(12345));
+        for (String c : candidates) {
+            if (names.size() >= size) break;
+            names.add(c);
+        }
+        if (names.size() < size) {
+            throw new IllegalArgumentException("Can't make " + size + " distinct names");
+        }
+        return new ArrayList<>(names);
+    }
+
+}
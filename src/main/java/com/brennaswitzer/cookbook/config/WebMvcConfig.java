@@ -7,9 +7,12 @@ import org.springframework.boot.autoconfigure.web.servlet.error.ErrorViewResolve
 import org.springframework.boot.web.servlet.error.ErrorAttributes;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,11 +25,15 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     private final List<ErrorViewResolver> errorViewResolvers;
 
+    private final EntityManagerFactory entityManagerFactory;
+
     public WebMvcConfig(ServerProperties serverProperties,
-                        ObjectProvider<ErrorViewResolver> errorViewResolvers) {
+                        ObjectProvider<ErrorViewResolver> errorViewResolvers,
+                        EntityManagerFactory entityManagerFactory) {
         this.serverProperties = serverProperties;
         this.errorViewResolvers = errorViewResolvers.orderedStream()
                 .collect(Collectors.toList());
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Bean
@@ -45,4 +52,18 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .maxAge(MAX_AGE_SECS);
 
     }
+
+    /**
+     * I replace Spring Boot's open-in-view, which is turned off, with one that
+     * skips plan event streams. Those stay open for up to half an hour, and
+     * would hold their EntityManager's connection the whole time.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor openInView = new OpenEntityManagerInViewInterceptor();
+        openInView.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(openInView)
+                .excludePathPatterns("/api/plan/*/events");
+    }
+
 }
@@ -1,9 +1,9 @@
 package com.brennaswitzer.cookbook.domain;
 
+import com.brennaswitzer.cookbook.services.IngredientIndexListener;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import lombok.Getter;
-import lombok.Setter;
 
 import javax.persistence.*;
 import java.util.Comparator;
@@ -13,6 +13,7 @@ import java.util.Set;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn
+@EntityListeners(IngredientIndexListener.class)
 @JsonTypeInfo(
         use = JsonTypeInfo.Id.NAME,
         property = "type"
@@ -30,9 +31,12 @@ public abstract class Ingredient extends BaseEntity implements Identified, Label
     };
 
     @Getter
-    @Setter
     private String name;
 
+    // The lowercased name, so case-insensitive lookups by name can use an
+    // index, instead of lowercasing every row. It's maintained by setName.
+    private String canonicalName;
+
     @ElementCollection
     private Set<LabelRef> labels = new HashSet<>();
 
@@ -42,6 +46,15 @@ public abstract class Ingredient extends BaseEntity implements Identified, Label
         setName(name);
     }
 
+    public void setName(String name) {
+        this.name = name;
+        this.canonicalName = canonicalizeName(name);
+    }
+
+    public static String canonicalizeName(String name) {
+        return name == null ? null : name.toLowerCase();
+    }
+
     public Set<Label> getLabels() {
         Set<Label> s = new HashSet<>();
         for (LabelRef ref : labels) {
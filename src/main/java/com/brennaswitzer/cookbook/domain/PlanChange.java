@@ -0,0 +1,48 @@
+package com.brennaswitzer.cookbook.domain;
+
+import lombok.Getter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+/**
+ * I record that a task in a plan changed (or was removed), as of one of the
+ * plan's change sequence numbers. Plan clients poll for the changes after the
+ * last sequence number they saw, instead of reloading the whole plan. I refer
+ * to the plan and task by id, as I outlive removed tasks.
+ */
+@Entity
+@Table(name = "plan_change", indexes = {
+        @Index(name = "idx_plan_change_plan_seq", columnList = "plan_id, seq")
+})
+public class PlanChange extends BaseEntity {
+
+    @NotNull
+    @Column(name = "plan_id")
+    @Getter
+    private Long planId;
+
+    @Getter
+    private long seq;
+
+    @NotNull
+    @Column(name = "task_id")
+    @Getter
+    private Long taskId;
+
+    @Getter
+    private boolean removed;
+
+    public PlanChange() {}
+
+    public PlanChange(Long planId, long seq, Long taskId, boolean removed) {
+        this.planId = planId;
+        this.seq = seq;
+        this.taskId = taskId;
+        this.removed = removed;
+    }
+
+}
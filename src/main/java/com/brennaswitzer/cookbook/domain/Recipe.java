@@ -1,5 +1,6 @@
 package com.brennaswitzer.cookbook.domain;
 
+import com.brennaswitzer.cookbook.services.RecipeSearchIndexListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import lombok.Getter;
@@ -12,6 +13,7 @@ import java.util.List;
 
 @Entity
 @DiscriminatorValue("Recipe")
+@EntityListeners(RecipeSearchIndexListener.class)
 @JsonTypeName("Recipe")
 public class Recipe extends Ingredient implements AggregateIngredient, Owned {
 
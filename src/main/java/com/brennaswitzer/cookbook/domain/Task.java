@@ -1,5 +1,6 @@
 package com.brennaswitzer.cookbook.domain;
 
+import com.brennaswitzer.cookbook.services.PlanChangeListener;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.val;
@@ -9,7 +10,6 @@ import org.hibernate.annotations.BatchSize;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -20,6 +20,7 @@ import static javax.persistence.CascadeType.*;
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "_type")
 @DiscriminatorValue("item")
+@EntityListeners(PlanChangeListener.class)
 public class Task extends BaseEntity implements MutableItem {
 
     public static final Comparator<Task> BY_ID = (a, b) -> {
@@ -43,11 +44,17 @@ public class Task extends BaseEntity implements MutableItem {
     public static final Comparator<Task> BY_ORDER = (a, b) -> {
         if (a == null) return b == null ? 0 : 1;
         if (b == null) return -1;
-        int c = a.getPosition() - b.getPosition();
+        int c = Integer.compare(a.getPosition(), b.getPosition());
         if (c != 0) return c;
         return a.getName().compareToIgnoreCase(b.getName());
     };
 
+    /**
+     * The space left between siblings' positions, when they're appended or
+     * renumbered. Positions may be negative.
+     */
+    static final int POSITION_GAP = 1024;
+
     @NotNull
     @Getter
     @Setter
@@ -75,10 +82,26 @@ public class Task extends BaseEntity implements MutableItem {
     @Setter
     private int position;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @Getter
     private Task parent;
 
+    /**
+     * The plan this task is in, anywhere below, so finding it doesn't require
+     * walking up the tree. It's kept up to date by {@link #setParent}, and is
+     * null for plans themselves, and for tasks which aren't in one.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    private TaskList plan;
+
+    /**
+     * The plan this task was in before it moved to another one, until the
+     * {@link PlanChangeListener} has logged the move, so the old plan's
+     * clients hear it's gone.
+     */
+    @Transient
+    private Long formerPlanId;
+
     @OneToMany(mappedBy = "parent", cascade = ALL)
     @BatchSize(size = 100)
     private Set<Task> subtasks;
@@ -127,27 +150,62 @@ public class Task extends BaseEntity implements MutableItem {
         this(name, null, ingredient, null);
     }
 
+    /**
+     * I move the passed child to the passed position, before any sibling
+     * already at or after it. If that position is taken, the child goes
+     * between its new neighbors, per {@link #placeChildBetween}.
+     */
     public void setChildPosition(Task child, int position) {
-        AtomicInteger seq = new AtomicInteger();
-        boolean pending = true;
+        Task prev = null;
+        Task next = null;
         for (Task t : getOrderedSubtasksView()) {
             if (t.equals(child)) continue;
-            int min = seq.getAndIncrement();
-            if (pending && min >= position) {
-                pending = false;
-                child.setPosition(position);
-                min = seq.getAndIncrement();
+            if (t.getPosition() >= position) {
+                next = t;
+                break;
             }
-            int curr = t.getPosition();
-            if (curr < min) {
-                t.setPosition(min);
-            } else if (curr > min) {
-                seq.set(curr + 1);
+            prev = t;
+        }
+        if (next == null || position < next.getPosition()) {
+            if (child.getPosition() != position) {
+                child.setPosition(position);
+                markDirty();
             }
+        } else {
+            placeChildBetween(child, prev, next);
         }
-        if (pending) {
-            child.setPosition(seq.get());
+    }
+
+    /**
+     * I put the passed child between two of its siblings, either of which may
+     * be null, to mean the start or end of the list. Siblings' positions are
+     * spaced {@link #POSITION_GAP} apart, so usually only the child's position
+     * changes. Only when there's no room left between them are all the
+     * children renumbered.
+     */
+    private void placeChildBetween(Task child, Task prev, Task next) {
+        long lo = prev == null ? Long.MIN_VALUE : prev.getPosition();
+        long hi = next == null ? Long.MAX_VALUE : next.getPosition();
+        long curr = child.getPosition();
+        if (lo < curr && curr < hi) return;
+        long pos;
+        if (prev == null && next == null) pos = 0;
+        else if (prev == null) pos = hi - POSITION_GAP;
+        else if (next == null) pos = lo + POSITION_GAP;
+        else pos = (lo + hi) / 2;
+        if (lo < pos && pos < hi
+                && pos >= Integer.MIN_VALUE
+                && pos <= Integer.MAX_VALUE) {
+            child.setPosition((int) pos);
+        } else {
+            List<Task> siblings = getOrderedSubtasksView();
+            siblings.remove(child);
+            siblings.add(next == null ? siblings.size() : siblings.indexOf(next), child);
+            for (int i = 0, l = siblings.size(); i < l; i++) {
+                siblings.get(i).setPosition(i * POSITION_GAP);
+            }
         }
+        markDirty();
     }
 
     public boolean isSubtask() {
@@ -168,7 +226,8 @@ public class Task extends BaseEntity implements MutableItem {
 
     public boolean isDescendant(Task t) {
         for (; t != null; t = t.getParent()) {
-            if (t == this) return true;
+            // parents may be proxies
+            if (this.equals(t)) return true;
         }
         return false;
     }
@@ -202,14 +261,34 @@ public class Task extends BaseEntity implements MutableItem {
                 parent.subtasks = new HashSet<>();
             }
             if (parent.subtasks.add(this)) {
-                setPosition(1 + parent.subtasks
-                        .stream()
-                        .map(Task::getPosition)
-                        .reduce(0, Integer::max));
+                // at the end
+                Task last = null;
+                for (Task t : parent.subtasks) {
+                    if (t == this) continue;
+                    if (last == null || t.getPosition() > last.getPosition()) {
+                        last = t;
+                    }
+                }
+                parent.placeChildBetween(this, last, null);
             }
             parent.markDirty();
         }
         this.parent = parent;
+        setPlan(parent == null ? null : parent.getTaskList());
+    }
+
+    private void setPlan(TaskList plan) {
+        if (Objects.equals(this.plan, plan)) return;
+        if (formerPlanId == null && this.plan != null) {
+            formerPlanId = this.plan.getId();
+        }
+        this.plan = plan;
+        // moving to another plan takes the whole subtree along
+        if (subtasks != null) {
+            for (Task t : subtasks) {
+                ((Task) Hibernate.unproxy(t)).setPlan(plan);
+            }
+        }
     }
 
     public void moveToTrash() {
@@ -262,7 +341,17 @@ public class Task extends BaseEntity implements MutableItem {
     }
 
     public TaskList getTaskList() {
-        return getParent().getTaskList();
+        return plan;
+    }
+
+    /**
+     * I return the id of the plan this task has moved out of since I was last
+     * asked, if any, and forget it.
+     */
+    public Long takeFormerPlanId() {
+        Long id = formerPlanId;
+        formerPlanId = null;
+        return id;
     }
 
     /**
@@ -292,17 +381,21 @@ public class Task extends BaseEntity implements MutableItem {
         if (after != null && !this.equals(after.getParent())) {
             throw new IllegalArgumentException("The 'after' task isn't a child of this; that makes no sense.");
         }
-        if (task.getParent() != null) {
-            task.getParent().removeSubtask(task);
+        addSubtask(task);
+        Task next = null;
+        boolean found = after == null;
+        for (Task t : getOrderedSubtasksView()) {
+            if (t.equals(task)) continue;
+            if (found) {
+                next = t;
+                break;
+            }
+            found = t.equals(after);
         }
-        int position = after == null ? 0 : after.getPosition() + 1;
-        insertSubtask(position, task);
+        placeChildBetween(task, after, next);
     }
 
     public void insertSubtask(int position, Task task) {
-        if (position < 0) {
-            throw new IllegalArgumentException("You can't insert a task at a negative position");
-        }
         if (task == null) {
             throw new IllegalArgumentException("You can't add the null subtask");
         }
@@ -27,6 +27,13 @@ public class TaskList extends Task implements AccessControlled {
     @BatchSize(size = 100)
     private Set<Task> trashBinTasks;
 
+    // Only ever changed via TaskRepository, so it doesn't bump updatedAt. It's
+    // never read here either, as a loaded plan's copy goes stale as soon as
+    // it's bumped; it's mapped so schema generation (e.g., for H2 in tests)
+    // creates the column. PlanChangeLog reads the sequence with a query.
+    @Column(name = "change_seq", insertable = false, updatable = false)
+    private Long changeSeq;
+
     public TaskList() {
     }
 
@@ -1,5 +1,6 @@
 package com.brennaswitzer.cookbook.domain;
 
+import com.brennaswitzer.cookbook.services.UnitOfMeasureListener;
 import com.brennaswitzer.cookbook.util.EnglishUtils;
 import lombok.Getter;
 import lombok.NonNull;
@@ -11,6 +12,7 @@ import java.util.*;
 
 @SuppressWarnings("JpaDataSourceORMInspection")
 @Entity
+@EntityListeners(UnitOfMeasureListener.class)
 @NamedQuery(name = "UnitOfMeasure.byName", query = "select uom\n" +
         "from UnitOfMeasure uom\n" +
         "    left join uom.aliases a\n" +
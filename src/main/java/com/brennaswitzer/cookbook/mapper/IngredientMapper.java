@@ -6,11 +6,14 @@ import com.brennaswitzer.cookbook.domain.PantryItem;
 import com.brennaswitzer.cookbook.domain.Recipe;
 import com.brennaswitzer.cookbook.payload.IngredientInfo;
 import com.brennaswitzer.cookbook.payload.IngredientRefInfo;
+import com.brennaswitzer.cookbook.payload.RecipeSummaryInfo;
 import org.mapstruct.DecoratedWith;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
 
+import java.util.List;
+
 @Mapper(
         uses = {
                 LabelMapper.class,
@@ -36,5 +39,15 @@ public interface IngredientMapper {
 
     IngredientInfo ingredientToInfo(Ingredient it);
 
+    @Mapping(target = "type", constant = "Recipe")
+    @Mapping(target = "labels", ignore = true)
+    @Mapping(target = "photo", ignore = true)
+    RecipeSummaryInfo recipeToSummary(Recipe r);
+
+    /**
+     * I summarize the passed recipes, in order. Their labels are loaded all
+     * together, not recipe by recipe, and their ingredients aren't loaded.
+     */
+    List<RecipeSummaryInfo> recipesToSummaries(List<Recipe> rs);
 
 }
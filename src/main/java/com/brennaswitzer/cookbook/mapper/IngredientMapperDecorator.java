@@ -3,12 +3,20 @@ package com.brennaswitzer.cookbook.mapper;
 import com.brennaswitzer.cookbook.domain.Photo;
 import com.brennaswitzer.cookbook.domain.Recipe;
 import com.brennaswitzer.cookbook.payload.IngredientInfo;
+import com.brennaswitzer.cookbook.payload.RecipeSummaryInfo;
+import com.brennaswitzer.cookbook.repositories.RecipeRepository;
 import com.brennaswitzer.cookbook.services.StorageService;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Component
 public abstract class IngredientMapperDecorator implements IngredientMapper {
 
@@ -19,6 +27,9 @@ public abstract class IngredientMapperDecorator implements IngredientMapper {
     @Autowired
     private StorageService storageService;
 
+    @Autowired
+    private RecipeRepository recipeRepository;
+
     @Override
     public IngredientInfo recipeToInfo(Recipe r) {
         val info = delegate.recipeToInfo(r);
@@ -35,4 +46,39 @@ public abstract class IngredientMapperDecorator implements IngredientMapper {
         return info;
     }
 
+    @Override
+    public RecipeSummaryInfo recipeToSummary(Recipe r) {
+        val info = delegate.recipeToSummary(r);
+        if (r.getOwner() != null) {
+            info.setOwnerId(r.getOwner().getId());
+        }
+        if (r.hasPhoto()) {
+            Photo photo = r.getPhoto();
+            info.setPhoto(storageService.load(photo.getObjectKey()));
+            if (photo.hasFocus()) {
+                info.setPhotoFocus(photo.getFocusArray());
+            }
+        }
+        return info;
+    }
+
+    @Override
+    public List<RecipeSummaryInfo> recipesToSummaries(List<Recipe> rs) {
+        List<RecipeSummaryInfo> infos = new ArrayList<>(rs.size());
+        if (rs.isEmpty()) return infos;
+        Map<Long, List<String>> labelsById = new HashMap<>();
+        for (Object[] row : recipeRepository.findAllIdAndLabelNameByIdIn(rs.stream()
+                .map(Recipe::getId)
+                .collect(Collectors.toList()))) {
+            labelsById.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                    .add((String) row[1]);
+        }
+        for (Recipe r : rs) {
+            val info = recipeToSummary(r);
+            info.setLabels(labelsById.get(r.getId()));
+            infos.add(info);
+        }
+        return infos;
+    }
+
 }
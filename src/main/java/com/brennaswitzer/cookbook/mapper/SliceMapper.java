@@ -10,13 +10,7 @@ import java.util.function.Function;
 public interface SliceMapper {
 
     default <T> Page<T> sliceToPage(Slice<T> slice) {
-        return new Page<>(
-                slice.getNumber(),
-                slice.getSize(),
-                slice.isFirst(),
-                slice.isLast(),
-                slice.getContent()
-        );
+        return Page.from(slice);
     }
 
     default <S, T> Page<T> sliceToPage(Slice<S> slice, Function<S, T> itemMapper) {
@@ -0,0 +1,35 @@
+package com.brennaswitzer.cookbook.message;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * I am an ordered list of the other plan actions, to be applied together. Each
+ * action has a {@code type} property saying which it is.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlanBatch {
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = CreatePlanTreeItem.class, name = "create"),
+            @JsonSubTypes.Type(value = RenamePlanTreeItem.class, name = "rename"),
+            @JsonSubTypes.Type(value = SetPlanTreeItemStatus.class, name = "status"),
+            @JsonSubTypes.Type(value = AssignPlanTreeItemBucket.class, name = "assign-bucket"),
+            @JsonSubTypes.Type(value = MutatePlanTree.class, name = "mutate-tree"),
+            @JsonSubTypes.Type(value = ReorderSubitems.class, name = "reorder-subitems"),
+            @JsonSubTypes.Type(value = DeletePlanTreeItem.class, name = "delete"),
+            @JsonSubTypes.Type(value = CreatePlanBucket.class, name = "create-bucket"),
+            @JsonSubTypes.Type(value = UpdatePlanBucket.class, name = "update-bucket"),
+            @JsonSubTypes.Type(value = DeletePlanBucket.class, name = "delete-bucket"),
+    })
+    private List<Object> actions;
+
+}
@@ -0,0 +1,23 @@
+package com.brennaswitzer.cookbook.payload;
+
+import lombok.Data;
+
+@Data
+public class ItemEdit {
+
+    private int offset;
+
+    private int deleted;
+
+    private String inserted;
+
+    private Integer cursor;
+
+    public Integer getCursor() {
+        // if not specified, it's after the inserted text
+        return cursor == null
+                ? offset + (inserted == null ? 0 : inserted.length())
+                : cursor;
+    }
+
+}
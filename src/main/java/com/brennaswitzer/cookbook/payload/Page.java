@@ -1,10 +1,13 @@
 package com.brennaswitzer.cookbook.payload;
 
+import com.brennaswitzer.cookbook.util.KeysetPageRequest;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @AllArgsConstructor
@@ -16,14 +19,33 @@ public class Page<E> {
                 slice.getSize(),
                 slice.isFirst(),
                 slice.isLast(),
-                slice.getContent()
+                slice.getContent(),
+                afterOf(slice),
+                null
         );
     }
 
+    private static String afterOf(Slice<?> slice) {
+        if (!slice.hasNext()) return null;
+        Pageable next = slice.nextPageable();
+        return next instanceof KeysetPageRequest
+                ? ((KeysetPageRequest) next).getAfter()
+                : null;
+    }
+
     private int page;
     private int pageSize;
     private boolean first;
     private boolean last;
     private List<E> content;
+    /**
+     * The token to pass back to get the next page, or {@code null} if this is
+     * the last page or pages are numbered.
+     */
+    private String after;
+    /**
+     * How many results have each label, if asked for.
+     */
+    private Map<String, Long> facets;
 
 }
@@ -0,0 +1,27 @@
+package com.brennaswitzer.cookbook.payload;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class PlanChanges {
+
+    /**
+     * The plan's sequence number these changes bring a client up to, which it
+     * should pass back next time it asks.
+     */
+    private long seq;
+
+    /**
+     * Whether some of the changes have been trimmed from the log, so the
+     * client must reload the whole plan instead.
+     */
+    private boolean reload;
+
+    private List<TaskInfo> items = new ArrayList<>();
+
+    private List<Long> deletedIds = new ArrayList<>();
+
+}
@@ -0,0 +1,27 @@
+package com.brennaswitzer.cookbook.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * I am the part of an {@link IngredientInfo} for a recipe which a listing
+ * shows. Ingredients and directions are left for the recipe's own
+ * {@code IngredientInfo}, fetched when it's viewed.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class RecipeSummaryInfo {
+
+    private Long id;
+    private String type;
+    private String name;
+    private Long ownerId;
+    private List<String> labels;
+    private Integer yield;
+    private Integer totalTime;
+    private String photo;
+    private float[] photoFocus;
+
+}
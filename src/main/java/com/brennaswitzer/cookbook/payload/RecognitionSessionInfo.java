@@ -0,0 +1,12 @@
+package com.brennaswitzer.cookbook.payload;
+
+import lombok.Data;
+
+@Data
+public class RecognitionSessionInfo {
+
+    private String id;
+
+    private RecognizedItem item;
+
+}
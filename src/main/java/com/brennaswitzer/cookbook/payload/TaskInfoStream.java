@@ -0,0 +1,39 @@
+package com.brennaswitzer.cookbook.payload;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * I am a sequence of {@link TaskInfo}s which are only built as they're
+ * written out, so they never all have to be in memory at once. I serialize as
+ * a JSON array, exactly like a {@code List<TaskInfo>} does, and can only be
+ * written once.
+ */
+public class TaskInfoStream extends JsonSerializable.Base {
+
+    private final Iterator<TaskInfo> infos;
+
+    public TaskInfoStream(Iterator<TaskInfo> infos) {
+        this.infos = infos;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartArray();
+        while (infos.hasNext()) {
+            serializers.defaultSerializeValue(infos.next(), gen);
+        }
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+}
@@ -2,16 +2,19 @@ package com.brennaswitzer.cookbook.repositories;
 
 import com.brennaswitzer.cookbook.domain.Ingredient;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface IngredientRepository extends BaseEntityRepository<Ingredient> {
 
     // The @Query is used to get case-insensitive ordering, which Spring Data
-    // doesn't support via method name modifiers (only predicates).
-    // todo: my dear god. index this.
+    // doesn't support via method name modifiers (only predicates). The caller
+    // passes a lowercase pattern, escaped with a backslash (see LikeUtils), so
+    // it's matched against canonicalName, which has a trigram index for
+    // exactly this.
     @Query("from Ingredient\n" +
-            "where lower(name) like %:lcSubstr%\n" +
-            "order by lower(name)\n" +
+            "where canonicalName like :pattern escape '\\'\n" +
+            "order by canonicalName\n" +
             "    , id")
-    Iterable<Ingredient> findByNameContainsIgnoreCaseOrderByNameIgnoreCaseAscIdAsc(String lcSubstr);
+    Iterable<Ingredient> findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(@Param("pattern") String pattern);
 
 }
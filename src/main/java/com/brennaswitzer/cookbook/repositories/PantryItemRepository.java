@@ -1,17 +1,31 @@
 package com.brennaswitzer.cookbook.repositories;
 
 import com.brennaswitzer.cookbook.domain.PantryItem;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface PantryItemRepository extends CrudRepository<PantryItem, Long> {
 
-    List<PantryItem> findByNameIgnoreCaseOrderById(String name);
+    List<PantryItem> findByCanonicalNameOrderById(String canonicalName);
 
-    List<PantryItem> findAllByNameIgnoreCaseContainingOrderById(String name);
+    // canonicalName is already lowercase, and trigram-indexed, so this can use
+    // the index, where a derived "contains" query's upper(name) couldn't. The
+    // pattern escapes with a backslash (see LikeUtils).
+    @Query("from PantryItem\n" +
+            "where canonicalName like :pattern escape '\\'\n" +
+            "order by id")
+    List<PantryItem> findAllByCanonicalNameLikeOrderById(@Param("pattern") String pattern);
+
+    List<PantryItem> findAllByCanonicalNameInOrderById(Collection<String> canonicalNames);
 
     List<PantryItem> findAllByUpdatedAtIsAfter(Instant cutoff);
 
+    @Query("select id, name from PantryItem")
+    List<Object[]> findAllIdAndName();
+
 }
@@ -0,0 +1,18 @@
+package com.brennaswitzer.cookbook.repositories;
+
+import com.brennaswitzer.cookbook.domain.PlanChange;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PlanChangeRepository extends BaseEntityRepository<PlanChange> {
+
+    List<PlanChange> findByPlanIdAndSeqGreaterThanOrderBySeq(Long planId, long seq);
+
+    @Modifying
+    @Query("delete from PlanChange where createdAt < ?1")
+    int deleteByCreatedAtBefore(Instant cutoff);
+
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,9 +45,30 @@ public interface RecipeRepository extends BaseEntityRepository<Recipe>, RecipeSe
             @Param("term") String filter
     );
 
-    List<Recipe> findByOwnerAndNameIgnoreCaseOrderById(User owner, String name);
+    List<Recipe> findByOwnerAndCanonicalNameOrderById(User owner, String canonicalName);
 
-    List<Recipe> findAllByOwnerAndNameIgnoreCaseContainingOrderById(User owner, String name);
+    // see PantryItemRepository.findAllByCanonicalNameLikeOrderById
+    @Query("from Recipe\n" +
+            "where owner = :owner\n" +
+            "    and canonicalName like :pattern escape '\\'\n" +
+            "order by id")
+    List<Recipe> findAllByOwnerAndCanonicalNameLikeOrderById(
+            @Param("owner") User owner,
+            @Param("pattern") String pattern
+    );
+
+    List<Recipe> findAllByOwnerAndCanonicalNameInOrderById(User owner, Collection<String> canonicalNames);
+
+    @Query("select id, name from Recipe where owner.id = ?1")
+    List<Object[]> findAllIdAndNameByOwnerId(Long ownerId);
+
+    @Query("select r.id, l.name\n" +
+            "from Recipe r\n" +
+            "    join r.labels lr\n" +
+            "    join lr.label l\n" +
+            "where r.id in :ids\n" +
+            "order by l.name")
+    List<Object[]> findAllIdAndLabelNameByIdIn(@Param("ids") Collection<Long> ids);
 
     @Override
     Optional<Recipe> findById(Long aLong);
@@ -6,6 +6,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 
 import java.util.Collection;
+import java.util.Map;
 
 public interface RecipeSearchRepository {
 
@@ -20,4 +21,62 @@ public interface RecipeSearchRepository {
             Pageable pageable
     );
 
+    /**
+     * I am {@link #searchRecipesByOwner(Collection, String, Pageable)}, but
+     * only find recipes with every one of the passed labels.
+     */
+    Slice<Recipe> searchRecipesByOwner(
+            Collection<User> owners,
+            String term,
+            Collection<String> labels,
+            Pageable pageable
+    );
+
+    /**
+     * I count the recipes {@link #searchRecipesByOwner(Collection, String, Collection, Pageable)}
+     * would find with each label, in one aggregate query. Labels without any
+     * such recipes, and hidden labels, are omitted. The counts are in label
+     * name order.
+     */
+    Map<String, Long> countLabelsByOwner(
+            Collection<User> owners,
+            String term,
+            Collection<String> labels
+    );
+
+    /**
+     * I find recipes with a full-text search of their name, labels, ingredient
+     * names, and directions, most relevant first. Name hits outrank the rest.
+     * Words are stemmed, and match any word they're a prefix of, so partial
+     * words work too. A recipe matching any of the words is found. Passing
+     * null owners searches everyone's recipes, and a blank term finds all of
+     * them, by name.
+     */
+    Slice<Recipe> fullTextSearchRecipesByOwner(
+            Collection<User> owners,
+            String term,
+            Pageable pageable
+    );
+
+    /**
+     * I am {@link #fullTextSearchRecipesByOwner(Collection, String, Pageable)},
+     * but only find recipes with every one of the passed labels.
+     */
+    Slice<Recipe> fullTextSearchRecipesByOwner(
+            Collection<User> owners,
+            String term,
+            Collection<String> labels,
+            Pageable pageable
+    );
+
+    /**
+     * I am {@link #countLabelsByOwner} for the recipes a full-text search
+     * would find.
+     */
+    Map<String, Long> fullTextCountLabelsByOwner(
+            Collection<User> owners,
+            String term,
+            Collection<String> labels
+    );
+
 }
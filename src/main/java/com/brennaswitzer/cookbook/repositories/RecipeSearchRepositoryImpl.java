@@ -1,19 +1,47 @@
 package com.brennaswitzer.cookbook.repositories;
 
 import com.brennaswitzer.cookbook.domain.*;
+import com.brennaswitzer.cookbook.util.DialectUtils;
+import com.brennaswitzer.cookbook.util.EnglishUtils;
+import com.brennaswitzer.cookbook.util.KeysetPageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.SliceImpl;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
 
+    /*
+     * The same weights Postgres' ts_rank uses by default for a recipe's name
+     * (A), labels (B), ingredients (C), and directions (D).
+     */
+    private static final float[] FIELD_WEIGHTS = { 1.0f, 0.4f, 0.2f, 0.1f };
+
+    private static final int NAME = 0;
+    private static final int LABELS = 1;
+    private static final int INGREDIENTS = 2;
+    private static final int DIRECTIONS = 3;
+
+    private static final String HIDDEN_LABELS = "--%";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // best first, the same as rankWithTextSearch's order by
+    private static final Comparator<SeekKey> FULL_TEXT_ORDER = Comparator
+            .<SeekKey>comparingDouble(k -> -k.rank)
+            .thenComparing(k -> k.name)
+            .thenComparingLong(k -> k.id);
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -46,27 +74,134 @@ public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
             Collection<User> owners,
             String filter,
             Pageable pageable
+    ) {
+        return searchRecipesByOwner(owners, filter, Collections.emptySet(), pageable);
+    }
+
+    @Override
+    public Slice<Recipe> searchRecipesByOwner(
+            Collection<User> owners,
+            String filter,
+            Collection<String> labels,
+            Pageable pageable
     ) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Recipe> query = cb.createQuery(Recipe.class);
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
         Root<Recipe> recipeRoot = query.from(Recipe.class);
-        query.select(recipeRoot);
+        // it's eager anyway, and this way it's not a query per owner
+        recipeRoot.fetch(Recipe_.owner, JoinType.LEFT);
         Expression<String> lowerName = cb.lower(recipeRoot.get(Recipe_.name));
-        Collection<Predicate> predicates = new ArrayList<>();
-        if (owners != null) {
-            predicates.add(recipeRoot.get(Recipe_.owner).in(owners));
+        Path<Long> id = recipeRoot.get(BaseEntity_.id);
+        SeekKey after = seekKeyOf(pageable);
+        Set<String> words = containsWords(filter);
+        Collection<Predicate> predicates = containsPredicates(cb, query, recipeRoot, owners, words, labels);
+
+        // the seek key is selected, so it's exactly what the query compares
+        if (words.isEmpty()) {
+            query.multiselect(recipeRoot, lowerName);
+            if (after != null) {
+                predicates.add(seekPast(cb, lowerName, id, after));
+            }
+            query.orderBy(cb.asc(lowerName), cb.asc(id));
+        } else {
+            Set<String> terms = likeTerms(words);
+            Expression<Integer> rank = cb.<Integer>selectCase()
+                    .when(likeAny(cb, lowerName, terms), 0)
+                    .otherwise(1);
+            query.multiselect(recipeRoot, lowerName, rank);
+            if (after != null) {
+                // name matches are rank zero, ahead of everything else
+                Predicate pastInRank = seekPast(cb, lowerName, id, after);
+                predicates.add(after.rank == 0
+                        ? cb.or(cb.not(likeAny(cb, lowerName, terms)), pastInRank)
+                        : cb.and(cb.not(likeAny(cb, lowerName, terms)), pastInRank));
+            }
+            query.orderBy(
+                    cb.asc(rank),
+                    cb.asc(lowerName),
+                    cb.asc(id)
+            );
         }
 
+        if (!predicates.isEmpty()) {
+            query.where(cb.and(predicates.toArray(new Predicate[0])));
+        }
+
+        return executeAndSlice(query, pageable, t -> new SeekKey(
+                        words.isEmpty() ? 0 : t.get(2, Number.class).floatValue(),
+                        t.get(1, String.class),
+                        t.get(0, Recipe.class).getId()))
+                .map(t -> t.get(0, Recipe.class));
+    }
+
+    /*
+        select l.name, count(r)
+        from Recipe r
+            join r.labels lr
+            join lr.label l
+        where <the same as searchRecipesByOwner>
+          and l.name not like '--%'
+        group by l.name
+        order by l.name
+     */
+    @Override
+    public Map<String, Long> countLabelsByOwner(
+            Collection<User> owners,
+            String filter,
+            Collection<String> labels
+    ) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Recipe> recipeRoot = query.from(Recipe.class);
+        Collection<Predicate> predicates = containsPredicates(cb, query, recipeRoot, owners, containsWords(filter), labels);
+        Path<String> labelName = recipeRoot
+                .join(Recipe_.labels)
+                .join(LabelRef_.label)
+                .get(Label_.name);
+        predicates.add(cb.not(cb.like(labelName, HIDDEN_LABELS)));
+        query.multiselect(labelName, cb.count(recipeRoot))
+                .where(predicates.toArray(new Predicate[0]))
+                .groupBy(labelName)
+                .orderBy(cb.asc(labelName));
+        return toCounts(entityManager.createQuery(query).getResultList());
+    }
+
+    private static Set<String> containsWords(String filter) {
         if (filter == null || filter.trim().isEmpty()) {
-            query.orderBy(cb.asc(lowerName));
-        } else {
-            Set<String> terms = Arrays.stream(filter.split("\\s"))
-                    .map(String::trim)
-                    .map(String::toLowerCase)
-                    .filter(it -> !it.isEmpty())
-                    .map(it -> '%' + it + '%')
-                    .collect(Collectors.toSet());
+            return Collections.emptySet();
+        }
+        return Arrays.stream(filter.split("\\s"))
+                .map(String::trim)
+                .map(it -> it.toLowerCase(Locale.ROOT))
+                .filter(it -> !it.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<String> likeTerms(Set<String> words) {
+        return words.stream()
+                .map(it -> '%' + it + '%')
+                .collect(Collectors.toSet());
+    }
 
+    /**
+     * I build the restrictions shared by the "contains" search's query and
+     * its label counting query: the recipes' owners, a match of any of the
+     * passed words, and having all the passed labels.
+     */
+    private Collection<Predicate> containsPredicates(
+            CriteriaBuilder cb,
+            AbstractQuery<?> query,
+            Root<Recipe> recipeRoot,
+            Collection<User> owners,
+            Set<String> words,
+            Collection<String> labels
+    ) {
+        Collection<Predicate> predicates = new ArrayList<>();
+        if (owners != null) {
+            predicates.add(recipeRoot.get(Recipe_.owner).in(owners));
+        }
+        if (!words.isEmpty()) {
+            Set<String> terms = likeTerms(words);
             Subquery<Integer> labelSubquery = query.subquery(Integer.class);
             labelSubquery.select(cb.literal(1));
             Join<LabelRef, Label> labelJoin = labelSubquery
@@ -75,29 +210,389 @@ public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
                     .join(LabelRef_.label);
             Expression<String> lName = cb.lower(labelJoin.get(Label_.name));
             labelSubquery.where(
-                    cb.not(cb.like(lName, "--%")),
+                    cb.not(cb.like(lName, HIDDEN_LABELS)),
                     likeAny(cb, lName, terms)
             );
 
-            Predicate nameMatch = likeAny(cb, lowerName, terms);
             predicates.add(cb.or(
-                    nameMatch,
+                    likeAny(cb, cb.lower(recipeRoot.get(Recipe_.name)), terms),
                     likeAny(cb, cb.lower(recipeRoot.get(Recipe_.directions)), terms),
                     cb.exists(labelSubquery)
             ));
-            query.orderBy(
-                    cb.asc(cb.selectCase()
-                            .when(nameMatch, 0)
-                            .otherwise(1)),
-                    cb.asc(lowerName)
-            );
         }
+        if (labels != null && !labels.isEmpty()) {
+            predicates.add(recipeRoot.get(BaseEntity_.id)
+                    .in(withAllLabels(cb, query, labels)));
+        }
+        return predicates;
+    }
 
-        if (!predicates.isEmpty()) {
-            query.where(cb.and(predicates.toArray(new Predicate[0])));
+    /*
+        select r.id
+        from Recipe r
+            join r.labels lr
+            join lr.label l
+        where l.name in :labels
+        group by r.id
+        having count(l) = <number of labels>
+     */
+    private Subquery<Long> withAllLabels(CriteriaBuilder cb, AbstractQuery<?> query, Collection<String> labels) {
+        Set<String> distinct = new HashSet<>(labels);
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<Recipe> recipeRoot = subquery.from(Recipe.class);
+        Path<Long> id = recipeRoot.get(BaseEntity_.id);
+        Join<LabelRef, Label> labelJoin = recipeRoot
+                .join(Recipe_.labels)
+                .join(LabelRef_.label);
+        return subquery.select(id)
+                .where(labelJoin.get(Label_.name).in(distinct))
+                .groupBy(id)
+                .having(cb.equal(cb.count(id), (long) distinct.size()));
+    }
+
+    @Override
+    public Slice<Recipe> fullTextSearchRecipesByOwner(
+            Collection<User> owners,
+            String filter,
+            Pageable pageable
+    ) {
+        return fullTextSearchRecipesByOwner(owners, filter, Collections.emptySet(), pageable);
+    }
+
+    @Override
+    public Slice<Recipe> fullTextSearchRecipesByOwner(
+            Collection<User> owners,
+            String filter,
+            Collection<String> labels,
+            Pageable pageable
+    ) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return searchRecipesByOwner(owners, null, labels, pageable);
+        }
+        SeekKey after = seekKeyOf(pageable);
+        List<SeekKey> keys = DialectUtils.isPostgres(entityManager)
+                ? rankWithTextSearch(owners, filter, labels, pageable, after)
+                : rankInProcess(owners, filter, labels, pageable, after);
+        boolean hasNext = keys.size() > pageable.getPageSize();
+        if (hasNext) keys = keys.subList(0, pageable.getPageSize());
+        List<Recipe> recipes = findAllInOrder(keys.stream()
+                .map(k -> k.id)
+                .collect(Collectors.toList()));
+        return new SliceImpl<>(recipes, nextPageable(pageable, keys), hasNext);
+    }
+
+    @Override
+    public Map<String, Long> fullTextCountLabelsByOwner(
+            Collection<User> owners,
+            String filter,
+            Collection<String> labels
+    ) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return countLabelsByOwner(owners, null, labels);
+        }
+        if (DialectUtils.isPostgres(entityManager)) {
+            return countLabelsWithTextSearch(owners, filter, labels);
+        }
+        // the matches' labels are already loaded, so count them here
+        Map<String, Long> counts = new TreeMap<>();
+        for (RecipeDocument d : matchInProcess(owners, filter, labels)) {
+            for (String name : d.labelNames) {
+                counts.merge(name, 1L, Long::sum);
+            }
+        }
+        return new LinkedHashMap<>(counts);
+    }
+
+    /*
+        select r.id, ts_rank(r.search_vector, q), lower(r.name)
+        from ingredient r
+           , to_tsquery('english', 'word:* | word:*') q
+        where r.dtype = 'Recipe'
+          and r.search_vector @@ q
+        order by ts_rank(r.search_vector, q) desc
+               , lower(r.name)
+               , r.id
+     */
+    @SuppressWarnings("unchecked")
+    private List<SeekKey> rankWithTextSearch(Collection<User> owners, String filter, Collection<String> labels, Pageable pageable, SeekKey after) {
+        String tsQuery = toTsQuery(filter);
+        if (tsQuery.isEmpty() || (owners != null && owners.isEmpty())) return new ArrayList<>();
+        StringBuilder sql = new StringBuilder("select r.id\n" +
+                "     , ts_rank(r.search_vector, q)\n" +
+                "     , lower(r.name)\n" +
+                "from ingredient r\n" +
+                "   , to_tsquery('english', :query) q\n");
+        sql.append(textSearchWhere(owners, labels));
+        if (after != null) {
+            sql.append("  and (ts_rank(r.search_vector, q) < :rank\n" +
+                    "    or ts_rank(r.search_vector, q) = :rank\n" +
+                    "      and (lower(r.name) > :name\n" +
+                    "        or lower(r.name) = :name and r.id > :id))\n");
+        }
+        sql.append("order by ts_rank(r.search_vector, q) desc\n" +
+                "       , lower(r.name)\n" +
+                "       , r.id\n" +
+                "limit :limit");
+        if (after == null) {
+            sql.append(" offset :offset");
+        }
+        Query query = bindTextSearch(entityManager.createNativeQuery(sql.toString()), tsQuery, owners, labels)
+                .setParameter("limit", pageable.getPageSize() + 1);
+        if (after == null) {
+            query.setParameter("offset", pageable.getOffset());
+        } else {
+            query.setParameter("rank", after.rank)
+                    .setParameter("name", after.name)
+                    .setParameter("id", after.id);
+        }
+        return ((List<Object[]>) query.getResultList()).stream()
+                .map(row -> new SeekKey(
+                        ((Number) row[1]).floatValue(),
+                        (String) row[2],
+                        ((Number) row[0]).longValue()))
+                .collect(Collectors.toList());
+    }
+
+    /*
+        select l.name, count(*)
+        from ingredient r
+            join ingredient_labels il on il.ingredient_id = r.id
+            join label l on l.id = il.label_id
+           , to_tsquery('english', 'word:* | word:*') q
+        where <the same as rankWithTextSearch>
+          and l.name not like '--%'
+        group by l.name
+        order by l.name
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> countLabelsWithTextSearch(Collection<User> owners, String filter, Collection<String> labels) {
+        String tsQuery = toTsQuery(filter);
+        if (tsQuery.isEmpty() || (owners != null && owners.isEmpty())) return new LinkedHashMap<>();
+        String sql = "select l.name, count(*)\n" +
+                "from ingredient r\n" +
+                "    join ingredient_labels il on il.ingredient_id = r.id\n" +
+                "    join label l on l.id = il.label_id\n" +
+                "   , to_tsquery('english', :query) q\n" +
+                textSearchWhere(owners, labels) +
+                "  and l.name not like :hidden\n" +
+                "group by l.name\n" +
+                "order by l.name";
+        return toCounts(bindTextSearch(entityManager.createNativeQuery(sql), tsQuery, owners, labels)
+                .setParameter("hidden", HIDDEN_LABELS)
+                .getResultList());
+    }
+
+    private static String toTsQuery(String filter) {
+        return NON_WORD.splitAsStream(filter.toLowerCase(Locale.ROOT))
+                .filter(it -> !it.isEmpty())
+                .distinct()
+                .map(it -> it + ":*")
+                .collect(Collectors.joining(" | "));
+    }
+
+    /**
+     * I build the where clause shared by the full-text search's native
+     * queries, for a recipe {@code r} and tsquery {@code q}. Its parameters
+     * are bound by {@link #bindTextSearch}.
+     */
+    private static String textSearchWhere(Collection<User> owners, Collection<String> labels) {
+        StringBuilder sql = new StringBuilder("where r.dtype = 'Recipe'\n" +
+                "  and r.search_vector @@ q\n");
+        if (owners != null) {
+            sql.append("  and r.owner_id in (:ownerIds)\n");
+        }
+        if (labels != null && !labels.isEmpty()) {
+            sql.append("  and r.id in (select hil.ingredient_id\n" +
+                    "        from ingredient_labels hil\n" +
+                    "            join label hl on hl.id = hil.label_id\n" +
+                    "        where hl.name in (:labels)\n" +
+                    "        group by hil.ingredient_id\n" +
+                    "        having count(*) = :labelCount)\n");
+        }
+        return sql.toString();
+    }
+
+    private static Query bindTextSearch(Query query, String tsQuery, Collection<User> owners, Collection<String> labels) {
+        query.setParameter("query", tsQuery);
+        if (owners != null) {
+            query.setParameter("ownerIds", owners.stream()
+                    .map(User::getId)
+                    .collect(Collectors.toList()));
+        }
+        if (labels != null && !labels.isEmpty()) {
+            Set<String> distinct = new HashSet<>(labels);
+            query.setParameter("labels", distinct)
+                    .setParameter("labelCount", (long) distinct.size());
+        }
+        return query;
+    }
+
+    /**
+     * I'm the same search as {@link #rankWithTextSearch}, for databases
+     * without full-text search (i.e., H2 in tests). Every candidate recipe is
+     * loaded and scored, so I'm only suitable for small data sets.
+     */
+    private List<SeekKey> rankInProcess(Collection<User> owners, String filter, Collection<String> labels, Pageable pageable, SeekKey after) {
+        List<SeekKey> hits = scoreInProcess(owners, filter, labels);
+        int from = after == null
+                ? (int) Math.min(hits.size(), pageable.getOffset())
+                : seekIndex(hits, after);
+        int to = Math.min(hits.size(), from + pageable.getPageSize() + 1);
+        return new ArrayList<>(hits.subList(from, to));
+    }
+
+    /**
+     * I find and score every matching recipe, best first.
+     */
+    private List<SeekKey> scoreInProcess(Collection<User> owners, String filter, Collection<String> labels) {
+        List<SeekKey> hits = new ArrayList<>();
+        for (RecipeDocument d : matchInProcess(owners, filter, labels)) {
+            hits.add(new SeekKey(d.score, d.sortName, d.id));
+        }
+        hits.sort(FULL_TEXT_ORDER);
+        return hits;
+    }
+
+    /**
+     * I load and score every candidate recipe, returning those which match,
+     * in no particular order. A word's score is the weight of the best field
+     * it prefixes a word of, and a recipe's score is the sum of its words'
+     * scores.
+     */
+    private List<RecipeDocument> matchInProcess(Collection<User> owners, String filter, Collection<String> labels) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(EnglishUtils.searchTerms(filter)));
+        if (terms.isEmpty() || (owners != null && owners.isEmpty())) return new ArrayList<>();
+        Map<Long, RecipeDocument> docs = new HashMap<>();
+        // sorted by the database's lower(), like the Postgres path
+        for (Object[] row : queryByOwner("select r.id, r.name, r.directions, lower(r.name)\n" +
+                "from Recipe r", owners)) {
+            RecipeDocument d = new RecipeDocument((Long) row[0], (String) row[3]);
+            d.add(NAME, (String) row[1]);
+            d.add(DIRECTIONS, (String) row[2]);
+            docs.put(d.id, d);
+        }
+        for (Object[] row : queryByOwner("select r.id, l.name\n" +
+                "from Recipe r\n" +
+                "    join r.labels lr\n" +
+                "    join lr.label l", owners)) {
+            String name = (String) row[1];
+            if (name.startsWith("--")) continue;
+            RecipeDocument d = docs.get((Long) row[0]);
+            d.add(LABELS, name);
+            d.labelNames.add(name);
+        }
+        for (Object[] row : queryByOwner("select r.id, coalesce(i.name, ri.raw)\n" +
+                "from Recipe r\n" +
+                "    join r.ingredients ri\n" +
+                "    left join ri.ingredient i", owners)) {
+            docs.get((Long) row[0]).add(INGREDIENTS, (String) row[1]);
+        }
+        if (labels != null && !labels.isEmpty()) {
+            Set<String> distinct = new HashSet<>(labels);
+            docs.keySet().retainAll(entityManager.createQuery("select r.id\n" +
+                            "from Recipe r\n" +
+                            "    join r.labels lr\n" +
+                            "    join lr.label l\n" +
+                            "where l.name in :labels\n" +
+                            "group by r.id\n" +
+                            "having count(r) = :labelCount", Long.class)
+                    .setParameter("labels", distinct)
+                    .setParameter("labelCount", (long) distinct.size())
+                    .getResultList());
+        }
+        List<RecipeDocument> matches = new ArrayList<>();
+        for (RecipeDocument d : docs.values()) {
+            d.score = d.score(terms);
+            if (d.score > 0) matches.add(d);
+        }
+        return matches;
+    }
+
+    private static int seekIndex(List<SeekKey> hits, SeekKey after) {
+        int idx = Collections.binarySearch(hits, after, FULL_TEXT_ORDER);
+        // either just past it, or where it would have been
+        return idx >= 0 ? idx + 1 : -idx - 1;
+    }
+
+    private static Map<String, Long> toCounts(List<Object[]> rows) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    private List<Object[]> queryByOwner(String jpql, Collection<User> owners) {
+        if (owners == null) {
+            return entityManager.createQuery(jpql, Object[].class)
+                    .getResultList();
+        }
+        return entityManager.createQuery(jpql + "\nwhere r.owner in :owners", Object[].class)
+                .setParameter("owners", owners)
+                .getResultList();
+    }
+
+    private List<Recipe> findAllInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return new ArrayList<>();
+        Map<Long, Recipe> byId = entityManager.createQuery("select r\n" +
+                        "from Recipe r\n" +
+                        "    left join fetch r.owner\n" +
+                        "where r.id in :ids", Recipe.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.toMap(Recipe::getId, r -> r));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static class RecipeDocument {
+
+        private final Long id;
+
+        private final String sortName;
+
+        private final List<Set<String>> fields = new ArrayList<>(FIELD_WEIGHTS.length);
+
+        // its visible labels, for counting
+        private final Set<String> labelNames = new HashSet<>();
+
+        private float score;
+
+        private RecipeDocument(Long id, String sortName) {
+            this.id = id;
+            this.sortName = sortName == null ? "" : sortName;
+            for (int i = 0; i < FIELD_WEIGHTS.length; i++) {
+                fields.add(new HashSet<>());
+            }
+        }
+
+        private void add(int field, String text) {
+            fields.get(field).addAll(EnglishUtils.searchTerms(text));
+        }
+
+        private float score(List<String> terms) {
+            float score = 0;
+            for (String term : terms) {
+                for (int f = 0; f < FIELD_WEIGHTS.length; f++) {
+                    if (prefixesAny(term, fields.get(f))) {
+                        score += FIELD_WEIGHTS[f];
+                        break;
+                    }
+                }
+            }
+            return score;
+        }
+
+        private static boolean prefixesAny(String term, Set<String> words) {
+            if (words.contains(term)) return true;
+            for (String w : words) {
+                if (w.startsWith(term)) return true;
+            }
+            return false;
         }
 
-        return executeAndSlice(query, pageable);
     }
 
     private Predicate likeAny(CriteriaBuilder cb, Expression<String> expr, Set<String> terms) {
@@ -108,16 +603,38 @@ public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
                 .get();
     }
 
+    private Predicate seekPast(CriteriaBuilder cb, Expression<String> lowerName, Path<Long> id, SeekKey after) {
+        return cb.or(
+                cb.greaterThan(lowerName, after.name),
+                cb.and(
+                        cb.equal(lowerName, after.name),
+                        cb.greaterThan(id, after.id)));
+    }
+
+    private static SeekKey seekKeyOf(Pageable pageable) {
+        if (!(pageable instanceof KeysetPageRequest)) return null;
+        String after = ((KeysetPageRequest) pageable).getAfter();
+        return after == null ? null : SeekKey.decode(after);
+    }
+
+    private static Pageable nextPageable(Pageable pageable, List<SeekKey> keys) {
+        if (!(pageable instanceof KeysetPageRequest) || keys.isEmpty()) return pageable;
+        return ((KeysetPageRequest) pageable).withNext(keys.get(keys.size() - 1).encode());
+    }
+
     /**
      * I provide the magic that Spring Data JPA does for a Slice return type on
      * a repository method, to execute an unbounded CriteriaQuery into a slice
-     * of its result.
+     * of its result. If the slice is of a {@link KeysetPageRequest}, the query
+     * must already seek past its token, and the passed function makes the
+     * token for the slice's last row, to continue after.
      * @param query The query to take a slice of results
      * @param pageable Where the slice should be taken
+     * @param keyOf Extracts a result's sort key
      * @param <T> The result type of the query
      * @return The requested slice of the passed query.
      */
-    private <T> Slice<T> executeAndSlice(CriteriaQuery<T> query, Pageable pageable) {
+    private <T> Slice<T> executeAndSlice(CriteriaQuery<T> query, Pageable pageable, Function<T, SeekKey> keyOf) {
         // copied from SlicedExecution in JpaQueryExecution
         TypedQuery<T> createQuery = entityManager.createQuery(query);
 
@@ -132,8 +649,54 @@ public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
 
         List<T> resultList = createQuery.getResultList();
         boolean hasNext = resultList.size() > pageSize;
+        if (hasNext) resultList = resultList.subList(0, pageSize);
+
+        if (pageable instanceof KeysetPageRequest && !resultList.isEmpty()) {
+            SeekKey last = keyOf.apply(resultList.get(resultList.size() - 1));
+            pageable = ((KeysetPageRequest) pageable).withNext(last.encode());
+        }
+        return new SliceImpl<>(resultList, pageable, hasNext);
+    }
+
+    /**
+     * I am where a row falls in a search's order: its rank, lowercased name,
+     * and ID. As a continuation token I'm encoded opaquely, so clients don't
+     * come to depend on what's inside.
+     */
+    private static class SeekKey {
+
+        private final float rank;
+
+        private final String name;
+
+        private final long id;
+
+        private SeekKey(float rank, String name, long id) {
+            this.rank = rank;
+            this.name = name == null ? "" : name;
+            this.id = id;
+        }
+
+        private String encode() {
+            String raw = rank + "\n" + id + "\n" + name;
+            return Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static SeekKey decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token),
+                                        StandardCharsets.UTF_8);
+                String[] parts = raw.split("\n", 3);
+                return new SeekKey(Float.parseFloat(parts[0]),
+                                   parts[2],
+                                   Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+            }
+        }
 
-        return new SliceImpl<>(hasNext ? resultList.subList(0, pageSize) : resultList, pageable, hasNext);
     }
 
 }
@@ -0,0 +1,21 @@
+package com.brennaswitzer.cookbook.repositories;
+
+/**
+ * I copy whole subtrees of {@link com.brennaswitzer.cookbook.domain.Task}s
+ * with a handful of statements, instead of one entity at a time. The copies
+ * are inserted behind Hibernate's back, so any already-loaded tasks have to be
+ * refreshed to see them. I don't check access; that's up to my callers.
+ */
+public interface TaskCopyRepository {
+
+    /**
+     * I copy every subtask below the "from" task, except those in the trash,
+     * to the same place below the "to" task, which must already be flushed
+     * and be a plan. Each copy keeps its original's name, status, position,
+     * ingredient, quantity, and preparation.
+     *
+     * @return The number of tasks copied.
+     */
+    int copySubtasks(Long fromId, Long toPlanId);
+
+}
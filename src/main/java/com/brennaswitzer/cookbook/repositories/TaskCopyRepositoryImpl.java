@@ -0,0 +1,127 @@
+package com.brennaswitzer.cookbook.repositories;
+
+import com.brennaswitzer.cookbook.domain.Task;
+import com.brennaswitzer.cookbook.util.IdUtils;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TaskCopyRepositoryImpl implements TaskCopyRepository {
+
+    // the same size as the entities' @BatchSize
+    private static final int BATCH_SIZE = 100;
+
+    /*
+     * Every task below the root, except those in the trash, with parents
+     * before their children.
+     */
+    private static final String SUBTREE_QUERY = "with recursive tree (id, depth) as (\n" +
+            "    select id, 0\n" +
+            "    from task\n" +
+            "    where id = :id\n" +
+            "    union all\n" +
+            "    select t.id, tree.depth + 1\n" +
+            "    from task t\n" +
+            "        join tree on t.parent_id = tree.id\n" +
+            "    where t.trash_bin_id is null\n" +
+            ")\n" +
+            "select t.id\n" +
+            "     , t.parent_id\n" +
+            "     , t.name\n" +
+            "     , t.status_id\n" +
+            "     , t.position\n" +
+            "     , t.ingredient_id\n" +
+            "     , t.quantity\n" +
+            "     , t.units_id\n" +
+            "     , t.preparation\n" +
+            "from tree\n" +
+            "    join task t on t.id = tree.id\n" +
+            "where tree.depth > 0\n" +
+            "order by tree.depth";
+
+    private static final String INSERT = "insert into task\n" +
+            "    (id, _eqkey, created_at, updated_at, _type, plan_id,\n" +
+            "     parent_id, name, status_id, position,\n" +
+            "     ingredient_id, quantity, units_id, preparation)\n" +
+            "values (?, ?, ?, ?, 'item', ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public void setEntityManager(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int copySubtasks(Long fromId, Long toPlanId) {
+        List<Object[]> rows = entityManager.createNativeQuery(SUBTREE_QUERY)
+                .setParameter("id", fromId)
+                .getResultList();
+        if (rows.isEmpty()) return 0;
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        // Hibernate's own generator, so ids come from id_seq a block at a
+        // time, and never collide with the ones it hands out for entities.
+        IdentifierGenerator generator = session.getFactory()
+                .getMetamodel()
+                .entityPersister(Task.class)
+                .getIdentifierGenerator();
+        Map<Long, Long> newIds = new HashMap<>();
+        newIds.put(fromId, toPlanId);
+        long[] ids = new long[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (Long) generator.generate(session, null);
+            newIds.put(toLong(rows.get(i)[0]), ids[i]);
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        session.doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+                for (int i = 0; i < ids.length; i++) {
+                    Object[] row = rows.get(i);
+                    ps.setLong(1, ids[i]);
+                    ps.setLong(2, IdUtils.next(Task.class));
+                    ps.setTimestamp(3, now);
+                    ps.setTimestamp(4, now);
+                    ps.setLong(5, toPlanId);
+                    ps.setLong(6, newIds.get(toLong(row[1])));
+                    ps.setString(7, (String) row[2]);
+                    setNullable(ps, 8, row[3], Types.BIGINT);
+                    ps.setInt(9, ((Number) row[4]).intValue());
+                    setNullable(ps, 10, row[5], Types.BIGINT);
+                    setNullable(ps, 11, row[6], Types.DOUBLE);
+                    setNullable(ps, 12, row[7], Types.BIGINT);
+                    ps.setString(13, (String) row[8]);
+                    ps.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) ps.executeBatch();
+                }
+                if (ids.length % BATCH_SIZE != 0) ps.executeBatch();
+            }
+        });
+        return ids.length;
+    }
+
+    private static void setNullable(PreparedStatement ps, int idx, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(idx, sqlType);
+        } else if (sqlType == Types.DOUBLE) {
+            ps.setDouble(idx, ((Number) value).doubleValue());
+        } else {
+            ps.setLong(idx, ((Number) value).longValue());
+        }
+    }
+
+    private static Long toLong(Object o) {
+        return o == null ? null : ((Number) o).longValue();
+    }
+
+}
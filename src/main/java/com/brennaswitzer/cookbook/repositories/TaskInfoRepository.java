@@ -0,0 +1,30 @@
+package com.brennaswitzer.cookbook.repositories;
+
+import com.brennaswitzer.cookbook.payload.TaskInfo;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * I build {@link TaskInfo}s straight from query rows, without loading any
+ * {@link com.brennaswitzer.cookbook.domain.Task} entities, for reads which
+ * never change anything. I don't check access; that's up to my callers.
+ */
+public interface TaskInfoRepository {
+
+    /**
+     * I return the same thing as {@code TaskInfo.fromTasks(getTreeById(id))},
+     * in the same order, but the whole subtree, with its component links, is
+     * loaded with a single recursive query. Each TaskInfo is only finished as
+     * it's iterated over, and the tree is let go of as it goes.
+     */
+    Iterator<TaskInfo> findTreeInfoById(Long id);
+
+    /**
+     * I return {@link TaskInfo#fromTask} for each of the passed tasks which
+     * exist, in the order passed.
+     */
+    List<TaskInfo> findInfoByIdIn(Collection<Long> ids);
+
+}
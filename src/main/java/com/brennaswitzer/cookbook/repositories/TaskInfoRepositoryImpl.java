@@ -0,0 +1,246 @@
+package com.brennaswitzer.cookbook.repositories;
+
+import com.brennaswitzer.cookbook.payload.TaskInfo;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public class TaskInfoRepositoryImpl implements TaskInfoRepository {
+
+    // the same size as the entities' @BatchSize
+    private static final int BATCH_SIZE = 100;
+
+    /*
+     * Every query which builds TaskInfos starts with these columns: id, name,
+     * notes, status_id, position, parent_id, aggregate_id, ingredient_id,
+     * quantity, units_id, units_name, preparation, and bucket_id.
+     */
+    private static final String INFO_COLUMNS = "t.id\n" +
+            "     , t.name\n" +
+            "     , t.notes\n" +
+            "     , t.status_id\n" +
+            "     , t.position\n" +
+            "     , t.parent_id\n" +
+            "     , t.aggregate_id\n" +
+            "     , t.ingredient_id\n" +
+            "     , t.quantity\n" +
+            "     , t.units_id\n" +
+            "     , u.name as units_name\n" +
+            "     , t.preparation\n" +
+            "     , t.bucket_id\n";
+
+    /*
+     * A row for every task in the subtree, except those in the trash, and for
+     * every component of those tasks. The last column, in_tree, is 1 for the
+     * subtree's tasks, and 0 for components outside it.
+     */
+    private static final String TREE_QUERY = "with recursive tree (id) as (\n" +
+            "    select id\n" +
+            "    from task\n" +
+            "    where id = :id\n" +
+            "    union all\n" +
+            "    select t.id\n" +
+            "    from task t\n" +
+            "        join tree on t.parent_id = tree.id\n" +
+            "    where t.trash_bin_id is null\n" +
+            ")\n" +
+            "select " + INFO_COLUMNS +
+            "     , case when tree.id is null then 0 else 1 end as in_tree\n" +
+            "from task t\n" +
+            "    left join tree on tree.id = t.id\n" +
+            "    left join unit_of_measure u on u.id = t.units_id\n" +
+            "where tree.id is not null\n" +
+            "   or t.aggregate_id in (select id from tree)";
+
+    private static final String INFO_QUERY = "select " + INFO_COLUMNS +
+            "from task t\n" +
+            "    left join unit_of_measure u on u.id = t.units_id\n" +
+            "where t.id in (:ids)";
+
+    private static final String SUBTASK_QUERY = "select id, parent_id, position, name\n" +
+            "from task\n" +
+            "where parent_id in (:ids)\n" +
+            "  and trash_bin_id is null";
+
+    private static final String COMPONENT_QUERY = "select id, aggregate_id\n" +
+            "from task\n" +
+            "where aggregate_id in (:ids)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public void setEntityManager(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Iterator<TaskInfo> findTreeInfoById(Long id) {
+        Map<Long, TreeNode> nodes = new HashMap<>();
+        // aggregate and component ids
+        List<Long[]> components = new ArrayList<>();
+        try (Stream<Object[]> rows = stream(entityManager
+                .createNativeQuery(TREE_QUERY)
+                .setParameter("id", id)
+                .setHint(HINT_FETCH_SIZE, 500))) {
+            rows.forEach(row -> {
+                if (toLong(row[13]) == 1) {
+                    TreeNode n = new TreeNode(row);
+                    nodes.put(n.info.getId(), n);
+                }
+                if (row[6] != null) {
+                    components.add(new Long[] { toLong(row[6]), toLong(row[0]) });
+                }
+            });
+        }
+        TreeNode root = nodes.get(id);
+        if (root == null) return Collections.emptyIterator();
+        for (TreeNode n : nodes.values()) {
+            if (n == root) continue;
+            TreeNode parent = nodes.get(n.info.getParentId());
+            if (parent != null) parent.subtasks.add(n);
+        }
+        for (Long[] c : components) {
+            TreeNode agg = nodes.get(c[0]);
+            if (agg != null) agg.componentIds.add(c[1]);
+        }
+        // depth first, pre-order; each node is dropped once it's returned
+        Deque<TreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        return new Iterator<TaskInfo>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public TaskInfo next() {
+                TreeNode n = stack.pop();
+                TaskInfo info = n.toInfo();
+                for (int i = n.subtasks.size() - 1; i >= 0; i--) {
+                    stack.push(n.subtasks.get(i));
+                }
+                return info;
+            }
+        };
+    }
+
+    @Override
+    public List<TaskInfo> findInfoByIdIn(Collection<Long> ids) {
+        Map<Long, TreeNode> nodes = new HashMap<>();
+        List<Long> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int i = 0, l = idList.size(); i < l; i += BATCH_SIZE) {
+            List<Long> batch = idList.subList(i, Math.min(l, i + BATCH_SIZE));
+            for (Object[] row : query(INFO_QUERY, batch)) {
+                TreeNode n = new TreeNode(row);
+                nodes.put(n.info.getId(), n);
+            }
+            for (Object[] row : query(SUBTASK_QUERY, batch)) {
+                nodes.get(toLong(row[1])).subtasks.add(new TreeNode(
+                        toLong(row[0]),
+                        ((Number) row[2]).intValue(),
+                        (String) row[3]));
+            }
+            for (Object[] row : query(COMPONENT_QUERY, batch)) {
+                nodes.get(toLong(row[1])).componentIds.add(toLong(row[0]));
+            }
+        }
+        List<TaskInfo> result = new ArrayList<>(nodes.size());
+        for (Long id : idList) {
+            TreeNode n = nodes.get(id);
+            if (n != null) result.add(n.toInfo());
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> query(String sql, Collection<Long> ids) {
+        return entityManager.createNativeQuery(sql)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Stream<Object[]> stream(Query query) {
+        return query.getResultStream();
+    }
+
+    private static Long toLong(Object o) {
+        return o == null ? null : ((Number) o).longValue();
+    }
+
+    private static class TreeNode {
+
+        private static final TaskStatusConverter STATUS_CONVERTER = new TaskStatusConverter();
+
+        // the same as Task.BY_ORDER
+        private static final Comparator<TreeNode> BY_ORDER = Comparator
+                .<TreeNode>comparingInt(n -> n.position)
+                .thenComparing(n -> n.info.getName(), String::compareToIgnoreCase);
+
+        private final TaskInfo info = new TaskInfo();
+
+        private final int position;
+
+        private final List<TreeNode> subtasks = new ArrayList<>();
+
+        private final List<Long> componentIds = new ArrayList<>();
+
+        private TreeNode(Object[] row) {
+            info.setId(toLong(row[0]));
+            info.setName((String) row[1]);
+            String notes = (String) row[2];
+            if (notes != null && !notes.isEmpty()) info.setNotes(notes);
+            info.setStatus(STATUS_CONVERTER.convertToEntityAttribute(toLong(row[3])));
+            position = ((Number) row[4]).intValue();
+            info.setParentId(toLong(row[5]));
+            info.setAggregateId(toLong(row[6]));
+            Long ingredientId = toLong(row[7]);
+            if (ingredientId != null) {
+                info.setIngredientId(ingredientId);
+                Long uomId = toLong(row[9]);
+                // a null Quantity means Quantity.ONE
+                info.setQuantity(row[8] != null
+                        ? ((Number) row[8]).doubleValue()
+                        : uomId == null ? 1 : 0);
+                if (uomId != null) {
+                    info.setUomId(uomId);
+                    info.setUnits((String) row[10]);
+                }
+                info.setPreparation((String) row[11]);
+            }
+            info.setBucketId(toLong(row[12]));
+        }
+
+        // just enough to be ordered among its siblings
+        private TreeNode(Long id, int position, String name) {
+            info.setId(id);
+            info.setName(name);
+            this.position = position;
+        }
+
+        private TaskInfo toInfo() {
+            if (!subtasks.isEmpty()) {
+                subtasks.sort(BY_ORDER);
+                long[] ids = new long[subtasks.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = subtasks.get(i).info.getId();
+                }
+                info.setSubtaskIds(ids);
+            }
+            if (!componentIds.isEmpty()) {
+                componentIds.sort(Comparator.naturalOrder());
+                info.setComponentIds(componentIds.stream()
+                        .mapToLong(Long::longValue)
+                        .toArray());
+            }
+            return info;
+        }
+
+    }
+
+}
@@ -6,13 +6,29 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.Instant;
+import java.util.List;
 
-public interface TaskRepository extends BaseEntityRepository<Task> {
+public interface TaskRepository extends BaseEntityRepository<Task>, TaskInfoRepository, TaskCopyRepository {
 
     Iterable<Task> findByIngredient(Ingredient ing);
 
+    List<Task> findByPlanIdAndUpdatedAtAfter(Long planId, Instant cutoff);
+
     @Modifying
     @Query("delete from Task where trashBin is not null and updatedAt < ?1")
     int deleteByUpdatedAtBeforeAndTrashBinIsNotNull(Instant cutoff);
 
+    @Query(nativeQuery = true, value = "select coalesce(change_seq, 0)\n" +
+            "from task\n" +
+            "where id = ?1")
+    Long getChangeSeqById(Long planId);
+
+    // The row lock this takes is held until commit, so the plan's changes
+    // get their sequence numbers in commit order.
+    @Modifying
+    @Query(nativeQuery = true, value = "update task\n" +
+            "set change_seq = coalesce(change_seq, 0) + 1\n" +
+            "where id = ?1")
+    int incrementChangeSeqById(Long planId);
+
 }
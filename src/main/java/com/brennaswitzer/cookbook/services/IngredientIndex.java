@@ -0,0 +1,239 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Ingredient;
+import com.brennaswitzer.cookbook.domain.PantryItem;
+import com.brennaswitzer.cookbook.domain.Recipe;
+import com.brennaswitzer.cookbook.repositories.PantryItemRepository;
+import com.brennaswitzer.cookbook.repositories.RecipeRepository;
+import com.brennaswitzer.cookbook.util.NGramIndex;
+import com.brennaswitzer.cookbook.util.PhraseMatcher;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * I am an in-memory substring index over ingredient names, for answering
+ * autocomplete-style "name contains" searches without a {@code LIKE '%x%'}
+ * scan. Pantry items are shared by everyone, so they're indexed once; recipes
+ * are indexed per owner. Each index is loaded from the database the first
+ * time it's needed, and then kept current by {@link IngredientIndexListener}.
+ * <p>
+ * Changes are only applied once their transaction commits, so while the
+ * current transaction has uncommitted ingredient changes, I report
+ * {@link #hasPendingChanges()} and callers should ask the database instead.
+ */
+@Service
+public class IngredientIndex {
+
+    private static final int MAX_OWNERS = 1000;
+
+    @Value
+    public static class Entry {
+        Long id;
+        String name;
+
+        public static Entry of(Ingredient it) {
+            return new Entry(it.getId(), it.getName());
+        }
+    }
+
+    private static class Partition {
+
+        private final Supplier<List<Object[]>> loader;
+
+        private NGramIndex<Entry> index;
+
+        private PhraseMatcher<Entry> matcher;
+
+        private Partition(Supplier<List<Object[]>> loader) {
+            this.loader = loader;
+        }
+
+        private void ensureLoaded() {
+            if (index != null) return;
+            NGramIndex<Entry> idx = new NGramIndex<>();
+            for (Object[] row : loader.get()) {
+                Long id = (Long) row[0];
+                String name = (String) row[1];
+                idx.put(id, name, new Entry(id, name));
+            }
+            index = idx;
+        }
+
+        synchronized List<Entry> search(String term, int limit) {
+            ensureLoaded();
+            return index.search(term, limit);
+        }
+
+        synchronized List<NGramIndex.Hit<Entry>> searchSimilar(String term, int maxDistance, int limit, long deadline) {
+            ensureLoaded();
+            return index.searchSimilar(term, maxDistance, limit, deadline);
+        }
+
+        synchronized PhraseMatcher<Entry> getPhraseMatcher() {
+            ensureLoaded();
+            if (matcher == null) {
+                PhraseMatcher<Entry> m = new PhraseMatcher<>();
+                for (Entry e : index.values()) {
+                    m.add(e.getName(), e);
+                }
+                matcher = m.build();
+            }
+            return matcher;
+        }
+
+        synchronized void apply(Ingredient it, boolean removed) {
+            // if it's not loaded yet, it'll pick up the change when it is
+            if (index == null || it.getId() == null) return;
+            matcher = null;
+            if (removed) {
+                index.remove(it.getId());
+            } else {
+                index.put(it.getId(), it.getName(), Entry.of(it));
+            }
+        }
+
+    }
+
+    private class PendingChanges implements TransactionSynchronization {
+
+        private final Map<Ingredient, Boolean> changes = new LinkedHashMap<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(IngredientIndex.this);
+            if (status != STATUS_COMMITTED) return;
+            changes.forEach(IngredientIndex.this::apply);
+        }
+
+    }
+
+    @Autowired
+    private PantryItemRepository pantryItemRepository;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private RecognitionCache recognitionCache;
+
+    private final Partition pantryItems = new Partition(() ->
+            pantryItemRepository.findAllIdAndName());
+
+    private final Map<Long, Partition> recipesByOwner = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Partition>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Partition> eldest) {
+                    return size() > MAX_OWNERS;
+                }
+            });
+
+    /**
+     * I find pantry items, and then the owner's recipes, whose name contains
+     * the passed term, ignoring case. Each group is ordered by id.
+     *
+     * @param ownerId The owner of the recipes to consider, if any
+     * @param term    The substring to search for
+     * @param limit   The maximum number of ingredients to return
+     * @return Ingredients whose name contains the term
+     */
+    public List<Entry> findAllByNameContaining(Long ownerId, String term, int limit) {
+        List<Entry> result = new ArrayList<>(pantryItems.search(term, limit));
+        if (ownerId != null && result.size() < limit) {
+            result.addAll(getRecipePartition(ownerId)
+                    .search(term, limit - result.size()));
+        }
+        return result;
+    }
+
+    /**
+     * I find pantry items and the owner's recipes which contain something
+     * within {@code maxDistance} edits of the passed term, ignoring case,
+     * closest first (pantry items before recipes at the same distance). I
+     * give up at the deadline, with whatever I've found so far.
+     *
+     * @param ownerId     The owner of the recipes to consider, if any
+     * @param term        The substring to approximately search for
+     * @param maxDistance The most edits a match may need
+     * @param limit       The maximum number of ingredients to return
+     * @param deadline    The {@link System#nanoTime()} to give up at
+     * @return Ingredients whose name approximately contains the term
+     */
+    public List<Entry> findAllByNameSimilarTo(Long ownerId, String term, int maxDistance, int limit, long deadline) {
+        List<NGramIndex.Hit<Entry>> hits = new ArrayList<>(pantryItems.searchSimilar(term, maxDistance, limit, deadline));
+        if (ownerId != null) {
+            hits.addAll(getRecipePartition(ownerId)
+                    .searchSimilar(term, maxDistance, limit, deadline));
+            hits.sort(Comparator.comparingInt(NGramIndex.Hit::getDistance));
+        }
+        List<Entry> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (NGramIndex.Hit<Entry> h : hits) {
+            if (result.size() >= limit) break;
+            result.add(h.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * I return phrase matchers for all pantry items and the owner's recipes,
+     * in that order, for finding ingredient names in a sequence of words.
+     *
+     * @param ownerId The owner of the recipes to consider, if any
+     * @return Phrase matchers for the ingredients' names
+     */
+    public List<PhraseMatcher<Entry>> getPhraseMatchers(Long ownerId) {
+        List<PhraseMatcher<Entry>> result = new ArrayList<>(2);
+        result.add(pantryItems.getPhraseMatcher());
+        if (ownerId != null) {
+            result.add(getRecipePartition(ownerId).getPhraseMatcher());
+        }
+        return result;
+    }
+
+    /**
+     * I indicate whether the current transaction has changed any ingredients
+     * which aren't reflected in the index yet.
+     */
+    public boolean hasPendingChanges() {
+        return TransactionSynchronizationManager.getResource(this) != null;
+    }
+
+    void onChange(Ingredient it, boolean removed) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(it, removed);
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.changes.put(it, removed);
+    }
+
+    private void apply(Ingredient it, boolean removed) {
+        if (it instanceof PantryItem) {
+            recognitionCache.invalidateAll();
+            pantryItems.apply(it, removed);
+        } else if (it instanceof Recipe) {
+            Recipe r = (Recipe) it;
+            if (r.getOwner() == null) return;
+            recognitionCache.invalidateUser(r.getOwner().getId());
+            Partition p = recipesByOwner.get(r.getOwner().getId());
+            if (p != null) p.apply(it, removed);
+        }
+    }
+
+    private Partition getRecipePartition(Long ownerId) {
+        return recipesByOwner.computeIfAbsent(ownerId, id ->
+                new Partition(() ->
+                        recipeRepository.findAllIdAndNameByOwnerId(id)));
+    }
+
+}
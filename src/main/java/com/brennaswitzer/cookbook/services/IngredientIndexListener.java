@@ -0,0 +1,39 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Ingredient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * I keep the {@link IngredientIndex} in sync with {@link Ingredient} writes.
+ * Hibernate creates me via Spring, but during EntityManagerFactory bootstrap,
+ * so the index is looked up lazily.
+ */
+public class IngredientIndexListener {
+
+    @Autowired
+    private ObjectProvider<IngredientIndex> indexProvider;
+
+    @PrePersist
+    @PreUpdate
+    public void onSave(Ingredient it) {
+        onChange(it, false);
+    }
+
+    @PreRemove
+    public void onRemove(Ingredient it) {
+        onChange(it, true);
+    }
+
+    private void onChange(Ingredient it, boolean removed) {
+        if (indexProvider == null) return;
+        IngredientIndex index = indexProvider.getIfAvailable();
+        if (index == null) return;
+        index.onChange(it, removed);
+    }
+
+}
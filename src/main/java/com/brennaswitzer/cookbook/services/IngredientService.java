@@ -4,9 +4,12 @@ import com.brennaswitzer.cookbook.domain.Ingredient;
 import com.brennaswitzer.cookbook.domain.PantryItem;
 import com.brennaswitzer.cookbook.domain.Recipe;
 import com.brennaswitzer.cookbook.domain.User;
+import com.brennaswitzer.cookbook.repositories.IngredientRepository;
 import com.brennaswitzer.cookbook.repositories.PantryItemRepository;
 import com.brennaswitzer.cookbook.repositories.RecipeRepository;
 import com.brennaswitzer.cookbook.util.EnglishUtils;
+import com.brennaswitzer.cookbook.util.LikeUtils;
+import com.brennaswitzer.cookbook.util.PhraseMatcher;
 import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -14,8 +17,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -27,46 +35,183 @@ public class IngredientService {
     @Autowired
     private PantryItemRepository pantryItemRepository;
 
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
     @Autowired
     private UserPrincipalAccess principalAccess;
 
+    @Autowired
+    private IngredientIndex ingredientIndex;
+
     public Ingredient ensureIngredientByName(String name) {
         Optional<? extends Ingredient> oing = findIngredientByName(name);
         if (oing.isPresent()) {
             return oing.get();
         }
+        return createPantryItem(name);
+    }
+
+    public PantryItem createPantryItem(String name) {
         // make a new pantry item
         return pantryItemRepository.save(new PantryItem(EnglishUtils.unpluralize(name)));
     }
 
     public Iterable<Ingredient> findAllIngredientsByNameContaining(String name) {
-        String unpluralized = EnglishUtils.unpluralize(name);
-        List<PantryItem> pantryItems = pantryItemRepository.findAllByNameIgnoreCaseContainingOrderById(unpluralized);
+        String pattern = LikeUtils.containing(Ingredient.canonicalizeName(EnglishUtils.unpluralize(name)));
+        List<PantryItem> pantryItems = pantryItemRepository.findAllByCanonicalNameLikeOrderById(pattern);
         List<Ingredient> result = new ArrayList<>(pantryItems);
         User user = principalAccess.getUser();
-        List<Recipe> recipes = recipeRepository.findAllByOwnerAndNameIgnoreCaseContainingOrderById(user, unpluralized);
+        List<Recipe> recipes = recipeRepository.findAllByOwnerAndCanonicalNameLikeOrderById(user, pattern);
         result.addAll(recipes);
         return result;
     }
 
+    /**
+     * I find up to {@code limit} pantry items and recipes whose name contains
+     * the passed one, for suggesting while a name is being typed. The result
+     * is the same as the first {@code limit} ingredients from
+     * {@link #findAllIngredientsByNameContaining}, but comes from the
+     * in-memory {@link IngredientIndex} whenever it's current.
+     *
+     * @param name  The (partial) name to search for
+     * @param limit The maximum number of ingredients to return
+     * @return List<IngredientIndex.Entry>
+     */
+    public List<IngredientIndex.Entry> findSuggestionsByNameContaining(String name, int limit) {
+        if (ingredientIndex.hasPendingChanges()) {
+            List<IngredientIndex.Entry> result = new ArrayList<>(limit);
+            for (Ingredient it : findAllIngredientsByNameContaining(name)) {
+                if (result.size() >= limit) break;
+                result.add(IngredientIndex.Entry.of(it));
+            }
+            return result;
+        }
+        return ingredientIndex.findAllByNameContaining(
+                principalAccess.getId(),
+                EnglishUtils.unpluralize(name),
+                limit);
+    }
+
+    /**
+     * I find up to {@code limit} pantry items and recipes whose name contains
+     * something within {@code maxDistance} edits of the passed one, closest
+     * first, for suggesting despite typos. This only uses the in-memory
+     * {@link IngredientIndex}, so if it isn't current, I find nothing. I give
+     * up at the deadline, with whatever I've found so far.
+     *
+     * @param name        The (partial, misspelled) name to search for
+     * @param maxDistance The most edits a match may need
+     * @param limit       The maximum number of ingredients to return
+     * @param deadline    The {@link System#nanoTime()} to give up at
+     * @return List<IngredientIndex.Entry>
+     */
+    public List<IngredientIndex.Entry> findSuggestionsByNameSimilarTo(String name, int maxDistance, int limit, long deadline) {
+        if (ingredientIndex.hasPendingChanges()) {
+            return Collections.emptyList();
+        }
+        return ingredientIndex.findAllByNameSimilarTo(
+                principalAccess.getId(),
+                EnglishUtils.unpluralize(name),
+                maxDistance,
+                limit,
+                deadline);
+    }
+
+    /**
+     * I return phrase matchers for all the ingredients whose names might be
+     * found in the passed words, for recognizing an implicit ingredient name.
+     * Normally these are all pantry items and the current user's recipes, from
+     * the {@link IngredientIndex}, but if it isn't current, only those
+     * ingredients whose name contains one of the words are considered.
+     *
+     * @param words The (lowercase) words which will be matched
+     * @return List<PhraseMatcher<IngredientIndex.Entry>>
+     */
+    public List<PhraseMatcher<IngredientIndex.Entry>> getPhraseMatchers(List<String> words) {
+        if (ingredientIndex.hasPendingChanges()) {
+            PhraseMatcher<IngredientIndex.Entry> matcher = new PhraseMatcher<>();
+            for (Ingredient it : findAllIngredientsByNamesContaining(words)) {
+                matcher.add(it.getName(), IngredientIndex.Entry.of(it));
+            }
+            return Collections.singletonList(matcher.build());
+        }
+        return ingredientIndex.getPhraseMatchers(principalAccess.getId());
+    }
+
     public Optional<? extends Ingredient> findIngredientByName(String name) {
         String unpluralized = EnglishUtils.unpluralize(name);
         // see if there's a pantry item...
-        List<PantryItem> pantryItem = pantryItemRepository.findByNameIgnoreCaseOrderById(unpluralized);
+        List<PantryItem> pantryItem = pantryItemRepository.findByCanonicalNameOrderById(
+                Ingredient.canonicalizeName(unpluralized));
         if (!pantryItem.isEmpty()) {
             return pantryItem.stream().findFirst();
         }
         // see if there's a recipe...
         User user = principalAccess.getUser();
-        List<Recipe> recipe = recipeRepository.findByOwnerAndNameIgnoreCaseOrderById(user, name);
+        List<Recipe> recipe = recipeRepository.findByOwnerAndCanonicalNameOrderById(
+                user,
+                Ingredient.canonicalizeName(name));
         if (!recipe.isEmpty() || name.equals(unpluralized)) {
             return recipe.stream().findFirst();
         }
-        return recipeRepository.findByOwnerAndNameIgnoreCaseOrderById(user, unpluralized)
+        return recipeRepository.findByOwnerAndCanonicalNameOrderById(
+                        user,
+                        Ingredient.canonicalizeName(unpluralized))
                 .stream()
                 .findFirst();
     }
 
+    /**
+     * I find the ingredient for each of the passed names, exactly as
+     * {@link #findIngredientByName} would, but with one query for pantry items
+     * and one for recipes, regardless of how many names there are.
+     *
+     * @param names The names to find ingredients for
+     * @return The ingredients found, keyed by the name they were found for
+     */
+    public Map<String, Ingredient> findIngredientsByNames(Collection<String> names) {
+        Map<String, Ingredient> result = new HashMap<>();
+        if (names.isEmpty()) return result;
+        Set<String> canonicalNames = new HashSet<>();
+        for (String name : names) {
+            canonicalNames.add(Ingredient.canonicalizeName(name));
+            canonicalNames.add(Ingredient.canonicalizeName(EnglishUtils.unpluralize(name)));
+        }
+        Map<String, Ingredient> pantryItems = new HashMap<>();
+        for (PantryItem it : pantryItemRepository.findAllByCanonicalNameInOrderById(canonicalNames)) {
+            pantryItems.putIfAbsent(Ingredient.canonicalizeName(it.getName()), it);
+        }
+        Map<String, Ingredient> recipes = new HashMap<>();
+        User user = principalAccess.getUser();
+        for (Recipe it : recipeRepository.findAllByOwnerAndCanonicalNameInOrderById(user, canonicalNames)) {
+            recipes.putIfAbsent(Ingredient.canonicalizeName(it.getName()), it);
+        }
+        for (String name : names) {
+            String unpluralized = Ingredient.canonicalizeName(EnglishUtils.unpluralize(name));
+            Ingredient it = pantryItems.get(unpluralized);
+            if (it == null) it = recipes.get(Ingredient.canonicalizeName(name));
+            if (it == null) it = recipes.get(unpluralized);
+            if (it != null) result.put(name, it);
+        }
+        return result;
+    }
+
+    /**
+     * I find the ingredients with the passed ids, with a single query.
+     *
+     * @param ids The ids of the ingredients to find
+     * @return The ingredients found, keyed by id
+     */
+    public Map<Long, Ingredient> findIngredientsByIds(Collection<Long> ids) {
+        Map<Long, Ingredient> result = new HashMap<>();
+        if (ids.isEmpty()) return result;
+        for (Ingredient it : ingredientRepository.findAllById(ids)) {
+            result.put(it.getId(), it);
+        }
+        return result;
+    }
+
     /**
      * I find a list of all pantry items and recipes that are the union of any
      * records that fuzzy match the name
@@ -2,37 +2,65 @@ package com.brennaswitzer.cookbook.services;
 
 import com.brennaswitzer.cookbook.domain.Ingredient;
 import com.brennaswitzer.cookbook.domain.MutableItem;
+import com.brennaswitzer.cookbook.domain.PantryItem;
 import com.brennaswitzer.cookbook.domain.Quantity;
 import com.brennaswitzer.cookbook.domain.UnitOfMeasure;
 import com.brennaswitzer.cookbook.payload.RawIngredientDissection;
 import com.brennaswitzer.cookbook.payload.RecognizedItem;
 import com.brennaswitzer.cookbook.payload.RecognizedItem.Range;
 import com.brennaswitzer.cookbook.payload.RecognizedItem.Suggestion;
+import com.brennaswitzer.cookbook.util.EditDistance;
 import com.brennaswitzer.cookbook.util.EnglishUtils;
 import com.brennaswitzer.cookbook.util.NumberUtils;
+import com.brennaswitzer.cookbook.util.PhraseMatcher;
 import com.brennaswitzer.cookbook.util.RawUtils;
+import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.persistence.EntityManager;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
 public class ItemService {
 
-    @Autowired
-    private EntityManager entityManager;
+    private static final int MAX_SUGGESTIONS = 10;
+
+    // shorter searches have too many typo-tolerant matches to be useful
+    private static final int MIN_FUZZY_SEARCH_LENGTH = 4;
+
+    private static final long FUZZY_SEARCH_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
 
     @Autowired
     private IngredientService ingredientService;
 
+    @Autowired
+    private IngredientIndex ingredientIndex;
+
+    @Autowired
+    private UnitResolver unitResolver;
+
+    @Autowired
+    private RecognitionCache recognitionCache;
+
+    @Autowired
+    private RecognitionSessions recognitionSessions;
+
+    @Autowired
+    private UserPrincipalAccess principalAccess;
+
     public RecognizedItem recognizeItem(String raw) {
         if (raw == null) return null;
         // if no cursor location is specified, assume it's at the end
@@ -46,123 +74,87 @@ public class ItemService {
     public RecognizedItem recognizeItem(String raw, int cursor, boolean withSuggestions) {
         if (raw == null) return null;
         if (raw.trim().isEmpty()) return null;
-        RecognizedItem item = new RecognizedItem(raw, cursor);
-        RawIngredientDissection d = RawUtils.dissect(raw);
-        RawIngredientDissection.Section secAmount = d.getQuantity();
-        if (secAmount != null) {
-            // there's an amount
-            item.withRange(new RecognizedItem.Range(
-                    secAmount.getStart(),
-                    secAmount.getEnd(),
-                    RecognizedItem.Type.AMOUNT
-            ).withValue(NumberUtils.parseNumber(secAmount.getText())));
-        }
-        RawIngredientDissection.Section secUnit = d.getUnits();
-        if (secUnit != null) {
-            // there's an explicit unit
-            Optional<UnitOfMeasure> ouom = UnitOfMeasure.find(
-                    entityManager,
-                    secUnit.getText());
-            item.withRange(new RecognizedItem.Range(
-                    secUnit.getStart(),
-                    secUnit.getEnd(),
-                    ouom.isPresent()
-                            ? RecognizedItem.Type.UNIT
-                            : RecognizedItem.Type.NEW_UNIT,
-                    ouom.map(UnitOfMeasure::getId).orElse(null)
-            ));
+        if (ingredientIndex.hasPendingChanges() || unitResolver.hasPendingChanges()) {
+            // uncommitted changes mustn't be cached
+            return recognizeUncached(raw, cursor, withSuggestions);
         }
-        RawIngredientDissection.Section secName = d.getName();
-        int idxNameStart = -1;
-        if (secName != null) {
-            // there's an explicit name
-            Optional<? extends Ingredient> oing = ingredientService.findIngredientByName(
-                    secName.getText());
-            idxNameStart = secName.getStart();
-            item.withRange(new RecognizedItem.Range(
-                    secName.getStart(),
-                    secName.getEnd(),
-                    oing.isPresent()
-                            ? RecognizedItem.Type.ITEM
-                            : RecognizedItem.Type.NEW_ITEM,
-                    oing.map(Ingredient::getId).orElse(null)
-            ));
-        } else if (!raw.contains("\"")) {
-            // no name, so see if there's an implicit one
-            Optional<Range> matched = multiPass(item.unrecognizedWords(), raw);
-            // TODO: Break out pieces and test for item service
-            // This line means that when we have a match, we get no more suggestions, which is not the behavior we want
-            // idxNameStart = matched.get().getStart();
-            matched.ifPresent(item::withRange);
+        return recognitionCache.get(
+                principalAccess.getId(),
+                raw,
+                cursor,
+                withSuggestions,
+                () -> recognizeUncached(raw, cursor, withSuggestions));
+    }
+
+    private RecognizedItem recognizeUncached(String raw, int cursor, boolean withSuggestions) {
+        return new Batch(Collections.singletonList(raw), null)
+                .recognize(0, cursor, withSuggestions);
+    }
+
+    /**
+     * I open a {@link RecognitionSession} for an item which is being typed,
+     * and recognize its initial raw string.
+     */
+    public RecognitionSession openRecognitionSession(String raw) {
+        return recognitionSessions.open(principalAccess.getId(), raw == null ? "" : raw);
+    }
+
+    /**
+     * I apply an edit to a session's raw string, and then recognize it again,
+     * reusing the sections and implicit names the edit didn't touch. The
+     * string is dissected again, since where one section ends and the next
+     * begins depends on all of it, but that's cheap next to the lookups.
+     *
+     * @param sessionId The id of the session to edit
+     * @param offset    The index of the edit in the session's raw string
+     * @param deleted   The number of characters deleted at the offset
+     * @param inserted  The text inserted at the offset
+     * @param cursor    The cursor position after the edit
+     * @return The recognized item, or null if the raw string is blank
+     */
+    public RecognizedItem editRecognitionSession(String sessionId, int offset, int deleted, String inserted, int cursor) {
+        RecognitionSession session = recognitionSessions.get(principalAccess.getId(), sessionId);
+        synchronized (session) {
+            session.applyEdit(offset, deleted, inserted);
+            return recognizeRecognitionSession(session, cursor);
         }
-        if (secAmount != null && secUnit == null && !raw.contains("_")) {
-            // there's an amount, but no explicit unit, so see if there's an implicit one
-            for (RecognizedItem.Range r : item.unrecognizedWords()) {
-                // unit must precede name, so abort if we get there
-                if (idxNameStart >= 0 && idxNameStart < r.getStart()) break;
-                Optional<UnitOfMeasure> ouom = UnitOfMeasure.find(
-                        entityManager,
-                        raw.substring(r.getStart(), r.getEnd()));
-                if (!ouom.isPresent()) continue;
-                item.withRange(r.of(RecognizedItem.Type.UNIT).withValue(ouom.get().getId()));
-                break;
+    }
+
+    public RecognizedItem recognizeRecognitionSession(RecognitionSession session, int cursor) {
+        synchronized (session) {
+            String raw = session.getRaw();
+            if (raw.trim().isEmpty()) return null;
+            if (ingredientIndex.hasPendingChanges() || unitResolver.hasPendingChanges()) {
+                // uncommitted changes mustn't be remembered
+                return recognizeUncached(raw, cursor, true);
             }
+            session.ensureGeneration(recognitionCache.getGeneration());
+            return new Batch(Collections.singletonList(raw), session)
+                    .recognize(0, cursor, true);
         }
-        if (withSuggestions && idxNameStart < 0) { // there's no name, explicit or implicit
-            // based on cursor position, see if we can suggest any names
-            // start with looking backwards for a quote
-            int start = raw.lastIndexOf('"', item.getCursor());
-            boolean hasQuote = true;
-            boolean hasSpace = false;
-            if (start < 0) { // look backwards for a non-trailing space
-                int end = item.getCursor() - 1;
-                while (Character.isWhitespace(raw.charAt(end))) end--;
-                start = raw.lastIndexOf(' ', end);
-                hasQuote = false;
-                hasSpace = true;
-            }
-            if (start < 0) { // whole prefix, i guess
-                start = 0;
-                hasQuote = false;
-                hasSpace = false;
-            }
-            int replaceStart = hasSpace ? start + 1 : start;
-            String search = raw.substring(hasQuote ? replaceStart + 1 : replaceStart, item.getCursor())
-                    .trim()
-                    .toLowerCase();
-            if (!search.isEmpty()) {
-                String singularSearch = EnglishUtils.unpluralize(search);
-                Iterable<Ingredient> matches = ingredientService.findAllIngredientsByNameContaining(search);
-                String lcRawPrefix = raw.toLowerCase()
-                        .substring(0, item.getCursor() - search.length());
-                StreamSupport.stream(matches.spliterator(), false)
-                        .limit(10)
-                        .forEach(i -> {
-                            // this should probably check all locations the
-                            // search matches, not just the first...
-                            String lcName = i.getName().toLowerCase();
-                            int idx = lcName.indexOf(singularSearch);
-                            int len = RawUtils.lengthOfLongestSharedSuffix(
-                                    lcName.subSequence(0, idx),
-                                    lcRawPrefix
-                            );
-                            // no leading spaces in the replaced range
-                            while (len > 0 && raw.charAt(replaceStart - len) == ' ') {
-                                len--;
-                            }
-                            item.withSuggestion(new Suggestion(
-                                    i.getName(),
-                                    new RecognizedItem.Range(
-                                            replaceStart - len,
-                                            item.getCursor(),
-                                            RecognizedItem.Type.ITEM,
-                                            i.getId()
-                                    )
-                            ));
-                        });
-            }
+    }
+
+    public void closeRecognitionSession(String sessionId) {
+        recognitionSessions.close(principalAccess.getId(), sessionId);
+    }
+
+    /**
+     * I recognize each of the passed raw strings, as if each were passed to
+     * {@link #recognizeItem(String, int, boolean)} with the cursor at the end
+     * and without suggestions. All explicit names are resolved together, with
+     * one query per table, rather than per string.
+     *
+     * @param raws The raw strings to recognize
+     * @return The recognized items, one per raw string (null for blank ones)
+     */
+    public List<RecognizedItem> recognizeItems(List<String> raws) {
+        Batch batch = new Batch(raws, null);
+        List<RecognizedItem> result = new ArrayList<>(raws.size());
+        for (int i = 0, l = raws.size(); i < l; i++) {
+            String raw = raws.get(i);
+            result.add(raw == null ? null : batch.recognize(i, raw.length(), false));
         }
-        return item;
+        return result;
     }
 
     public void updateAutoRecognition(MutableItem it) {
@@ -175,132 +167,489 @@ public class ItemService {
 
     public void autoRecognize(MutableItem it) {
         if (it == null) return;
-        String raw = it.getRaw();
-        if (raw == null || raw.trim().isEmpty()) return;
-        RecognizedItem recog = recognizeItem(raw);
-        if (recog == null) return;
-        RawIngredientDissection dissection = RawIngredientDissection
-                .fromRecognizedItem(recog);
-        if (!dissection.hasName()) return;
-        it.setIngredient(ingredientService.ensureIngredientByName(dissection.getNameText()));
-        it.setPreparation(dissection.getPrep());
-        if (!dissection.hasQuantity()) return;
-        Quantity q = new Quantity();
-        Double quantity = NumberUtils.parseNumber(dissection.getQuantityText());
-        if (quantity == null) return; // couldn't parse?
-        q.setQuantity(quantity);
-        if (dissection.hasUnits()) {
-            q.setUnits(UnitOfMeasure.ensure(entityManager,
-                    EnglishUtils.canonicalize(dissection.getUnitsText())));
+        autoRecognizeAll(Collections.singletonList(it));
+    }
+
+    /**
+     * I auto-recognize each of the passed items, in order, creating pantry
+     * items for any names which don't exist yet. The items are recognized as
+     * a batch, so the ingredients for all of them are resolved with a fixed
+     * number of queries, not a few per item. A pantry item created for one
+     * item will be recognized in the items after it.
+     *
+     * @param items The items to auto-recognize
+     */
+    public void autoRecognizeAll(Collection<? extends MutableItem> items) {
+        List<MutableItem> todo = new ArrayList<>(items.size());
+        List<String> raws = new ArrayList<>(items.size());
+        for (MutableItem it : items) {
+            if (it == null) continue;
+            String raw = it.getRaw();
+            if (raw == null || raw.trim().isEmpty()) continue;
+            todo.add(it);
+            raws.add(raw);
+        }
+        if (todo.isEmpty()) return;
+        Batch batch = new Batch(raws, null);
+        Map<MutableItem, Long> ingredientIds = new IdentityHashMap<>();
+        for (int i = 0, l = todo.size(); i < l; i++) {
+            MutableItem it = todo.get(i);
+            RecognizedItem recog = batch.recognize(i, raws.get(i).length(), false);
+            if (recog == null) continue;
+            RawIngredientDissection dissection = RawIngredientDissection
+                    .fromRecognizedItem(recog);
+            if (!dissection.hasName()) continue;
+            Optional<Range> nameRange = recog.getRanges().stream()
+                    .filter(r -> RecognizedItem.Type.ITEM.equals(r.getType()) || RecognizedItem.Type.NEW_ITEM.equals(r.getType()))
+                    .findFirst();
+            if (nameRange.isPresent() && nameRange.get().getValue() instanceof Long) {
+                // already known, so load it with the rest, below
+                ingredientIds.put(it, (Long) nameRange.get().getValue());
+            } else {
+                it.setIngredient(batch.ensureIngredient(dissection.getNameText()));
+            }
+            it.setPreparation(dissection.getPrep());
+            if (!dissection.hasQuantity()) continue;
+            Quantity q = new Quantity();
+            Double quantity = NumberUtils.parseNumber(dissection.getQuantityText());
+            if (quantity == null) continue; // couldn't parse?
+            q.setQuantity(quantity);
+            if (dissection.hasUnits()) {
+                q.setUnits(unitResolver.ensure(
+                        EnglishUtils.canonicalize(dissection.getUnitsText())));
+            }
+            it.setQuantity(q);
+        }
+        Map<Long, Ingredient> byId = ingredientService.findIngredientsByIds(ingredientIds.values());
+        ingredientIds.forEach((it, id) -> it.setIngredient(byId.get(id)));
+    }
+
+    /**
+     * I find the longest (and then earliest) run of the passed words which is
+     * the name of a known ingredient, by scanning the words once with a
+     * {@link PhraseMatcher} built over all the ingredient names.
+     *
+     * @param ranges The words to look through, in order
+     * @param raw The string the words' ranges are in
+     * @return The range of the matched words, if any
+     */
+    public Optional<Range> multiPass(Iterable<Range> ranges, String raw) {
+        List<Range> words = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        collectWords(ranges, raw, words, tokens);
+        if (words.isEmpty()) return Optional.empty();
+        return findBestMatch(findAllMatches(
+                words,
+                tokens,
+                ingredientService.getPhraseMatchers(tokens)));
+    }
+
+    private static void collectWords(Iterable<Range> ranges, String raw, List<Range> words, List<String> tokens) {
+        for (Range r : ranges) {
+            // a "word" of only punctuation will be empty
+            if (r.getStart() >= r.getEnd()) continue;
+            words.add(r);
+            tokens.add(raw.substring(r.getStart(), r.getEnd()).toLowerCase());
         }
-        it.setQuantity(q);
     }
 
-    static class Phrase implements Comparable<Phrase> {
-        String original;
-        String canonical;
-        Range range;
+    /**
+     * I find every ingredient name in the passed words. If more than one
+     * ingredient has the same name, only the first matcher's is included.
+     */
+    private static List<Range> findAllMatches(List<Range> words, List<String> tokens, List<PhraseMatcher<IngredientIndex.Entry>> matchers) {
+        Map<Range, Range> bySpan = new LinkedHashMap<>();
+        for (PhraseMatcher<IngredientIndex.Entry> matcher : matchers) {
+            for (PhraseMatcher.Match<IngredientIndex.Entry> m : matcher.findAll(tokens)) {
+                Range match = new Range(
+                        words.get(m.getStart()).getStart(),
+                        words.get(m.getEnd() - 1).getEnd(),
+                        RecognizedItem.Type.ITEM,
+                        m.getValue().getId()
+                );
+                // ranges' equality ignores their value
+                bySpan.putIfAbsent(match, match);
+            }
+        }
+        return new ArrayList<>(bySpan.values());
+    }
 
-        public static Comparator<Phrase> BY_POSITION = Comparator.comparingInt(a -> a.range.getStart());
+    private Optional<Range> findBestMatch(List<Range> matches) {
+        Range best = null;
+        for (Range match : matches) {
+            if (best == null || isBetterMatch(match, best)) {
+                best = match;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
 
-        Phrase(Range range, String original) {
-            this.range = range;
-            setOriginal(original);
+    /**
+     * I find ingredients to suggest for a (lowercase) search: those whose
+     * name contains it, and then if there aren't enough, those whose name
+     * contains something a typo or two away from it, closest first. The
+     * typo-tolerant search gives up after a fixed time budget.
+     */
+    private List<IngredientIndex.Entry> findSuggestions(String search) {
+        List<IngredientIndex.Entry> result = ingredientService.findSuggestionsByNameContaining(search, MAX_SUGGESTIONS);
+        if (result.size() >= MAX_SUGGESTIONS || search.length() < MIN_FUZZY_SEARCH_LENGTH) {
+            return result;
+        }
+        result = new ArrayList<>(result);
+        Set<Long> ids = new HashSet<>();
+        result.forEach(e -> ids.add(e.getId()));
+        for (IngredientIndex.Entry e : ingredientService.findSuggestionsByNameSimilarTo(
+                search,
+                getMaxTypos(search),
+                MAX_SUGGESTIONS,
+                System.nanoTime() + FUZZY_SEARCH_BUDGET_NANOS)) {
+            if (result.size() >= MAX_SUGGESTIONS) break;
+            if (ids.add(e.getId())) result.add(e);
         }
+        return result;
+    }
 
-        public void setOriginal(String raw) {
-            this.original = raw;
-            String sanitized = original
-                    .trim()
-                    .toLowerCase();
-            sanitized = EnglishUtils.canonicalize(sanitized);
-            sanitized = EnglishUtils.unpluralize(sanitized);
-            this.canonical = sanitized;
+    private static int getMaxTypos(String search) {
+        return search.length() < 7 ? 1 : 2;
+    }
+
+    private boolean isBetterMatch(Range match, Range best) {
+        int c = Integer.compare(match.getEnd() - match.getStart(), best.getEnd() - best.getStart());
+        if (c != 0) return c > 0;
+        return match.getStart() < best.getStart();
+    }
+
+    /**
+     * I am a batch of raw strings being recognized together. I dissect them
+     * all up front, and resolve all their explicit names at once; the phrase
+     * matchers for implicit names are also shared by the whole batch. If I'm
+     * recognizing for a {@link RecognitionSession}, I reuse what it remembers,
+     * and remember what I look up.
+     */
+    private class Batch {
+
+        private final List<String> raws;
+
+        private final RecognitionSession session;
+
+        private final List<RawIngredientDissection> dissections;
+
+        private final Map<String, Ingredient> ingredientsByName;
+
+        // pantry items created by this batch, keyed by lowercase name
+        private final Map<String, Ingredient> created = new HashMap<>();
+
+        private List<PhraseMatcher<IngredientIndex.Entry>> matchers;
+
+        private PhraseMatcher<IngredientIndex.Entry> createdMatcher;
+
+        private Batch(List<String> raws, RecognitionSession session) {
+            this.raws = raws;
+            this.session = session;
+            dissections = new ArrayList<>(raws.size());
+            Set<String> names = new HashSet<>();
+            for (String raw : raws) {
+                RawIngredientDissection d = raw == null || raw.trim().isEmpty()
+                        ? null
+                        : RawUtils.dissect(raw);
+                dissections.add(d);
+                if (d != null && d.getName() != null && findRemembered(d.getName(), RecognizedItem.Type.ITEM, RecognizedItem.Type.NEW_ITEM) == null) {
+                    names.add(d.getName().getText());
+                }
+            }
+            if (session != null) names.removeIf(session.ingredientIds::containsKey);
+            ingredientsByName = ingredientService.findIngredientsByNames(names);
         }
 
-        public String getOriginal() {
-            return original;
+        private Optional<Ingredient> findIngredient(String name) {
+            Ingredient found = ingredientsByName.get(name);
+            // pantry items take precedence over recipes
+            if (found instanceof PantryItem) return Optional.of(found);
+            Ingredient made = created.get(EnglishUtils.unpluralize(name).toLowerCase());
+            return Optional.ofNullable(made != null ? made : found);
         }
 
-        public String getCanonical() {
-            return canonical;
+        private Optional<Long> findIngredientId(String name) {
+            if (session == null) return findIngredient(name).map(Ingredient::getId);
+            return session.ingredientIds.computeIfAbsent(name, n ->
+                    findIngredient(n).map(Ingredient::getId));
         }
 
-        public Phrase of(RecognizedItem.Type type) {
-            return new Phrase(range.of(type), original);
+        private Optional<Long> findUnitId(String name) {
+            if (session == null) return unitResolver.find(name).map(UnitOfMeasure::getId);
+            return session.unitIds.computeIfAbsent(name, n ->
+                    unitResolver.find(n).map(UnitOfMeasure::getId));
         }
 
-        public Phrase withValue(Object value) {
-            range.withValue(value);
-            return this;
+        // a section no edit has touched since it was last resolved
+        private Range findRemembered(RawIngredientDissection.Section sec, RecognizedItem.Type... types) {
+            if (session == null) return null;
+            return session.findSection(sec.getStart(), sec.getEnd(), types);
         }
 
-        public Phrase merge(Phrase other) {
-            return new Phrase(
-                    range.merge(other.range),
-                    original + " " + other.original
-            );
+        private List<IngredientIndex.Entry> findSuggestions(String search) {
+            if (session == null) return ItemService.this.findSuggestions(search);
+            return session.suggestions.computeIfAbsent(search, ItemService.this::findSuggestions);
         }
 
-        public int compareTo(Phrase o) {
-            assert o != null;
-            return Integer.compare(range.getEnd() - range.getStart(), o.range.getEnd() - o.range.getStart());
+        private Ingredient ensureIngredient(String name) {
+            Optional<Ingredient> oing = findIngredient(name);
+            if (oing.isPresent()) return oing.get();
+            PantryItem it = ingredientService.createPantryItem(name);
+            created.put(it.getName().toLowerCase(), it);
+            createdMatcher = null;
+            return it;
         }
-    }
 
-    public Optional<Range> multiPass(Iterable<Range> ranges, String raw) {
+        private List<PhraseMatcher<IngredientIndex.Entry>> getPhraseMatchers(List<String> tokens) {
+            List<PhraseMatcher<IngredientIndex.Entry>> result;
+            if (matchers != null) {
+                result = matchers;
+            } else {
+                result = ingredientService.getPhraseMatchers(tokens);
+                // the fallback matchers only know about these tokens
+                if (!ingredientIndex.hasPendingChanges()) matchers = result;
+            }
+            if (created.isEmpty()) return result;
+            if (createdMatcher == null) {
+                PhraseMatcher<IngredientIndex.Entry> m = new PhraseMatcher<>();
+                created.values().forEach(it ->
+                        m.add(it.getName(), IngredientIndex.Entry.of(it)));
+                createdMatcher = m.build();
+            }
+            result = new ArrayList<>(result);
+            result.add(createdMatcher);
+            return result;
+        }
 
-        List<Phrase> rs = StreamSupport
-                .stream(ranges.spliterator(), false)
-                .map(it -> new Phrase(it, raw.substring(it.getStart(), it.getEnd())))
-                .collect(Collectors.toList());
-
-        List<String> words = rs
-                .stream()
-                .map(Phrase::getCanonical)
-                .collect(Collectors.toList());
-
-        Iterable<Ingredient> options = ingredientService.findAllIngredientsByNamesContaining(words);
-
-        List<Phrase> phrases = buildPhrases(rs);
-        Phrase best = null;
-
-        for (Phrase phrase : phrases) {
-            for (Ingredient opt : options) {
-                Phrase match = phrase.of(RecognizedItem.Type.ITEM).withValue(opt.getId());
-                if (phrase.getCanonical().equals(opt.getName()) || phrase.getOriginal().equalsIgnoreCase(opt.getName())) {
-                    if (best == null) {
-                        best = match;
-                    } else {
-                        if (phrase.compareTo(best) > 0) {
-                            best = match;
-                        } else if (phrase.compareTo(best) == 0) {
-                            // if the same number of words, which one happens first?
-                            if (phrases.indexOf(phrase) > phrases.indexOf(best)) {
-                                best = match;
-                            }
-                        }
+        /**
+         * I find the best implicit name among the unrecognized words. For a
+         * session, only the words the edits touched, and those near enough to
+         * be in a name with them, are scanned; names found elsewhere last
+         * time are still there.
+         */
+        private Optional<Range> findImplicitName(Iterable<Range> unrecognized, String raw) {
+            List<Range> words = new ArrayList<>();
+            List<String> tokens = new ArrayList<>();
+            collectWords(unrecognized, raw, words, tokens);
+            if (words.isEmpty()) return Optional.empty();
+            List<PhraseMatcher<IngredientIndex.Entry>> matchers = getPhraseMatchers(tokens);
+            if (session == null) {
+                return findBestMatch(findAllMatches(words, tokens, matchers));
+            }
+            List<Range> scanned = session.getScannedWords();
+            Map<Integer, Integer> scannedByStart = new HashMap<>();
+            if (scanned != null) {
+                for (int i = 0, l = scanned.size(); i < l; i++) {
+                    scannedByStart.put(scanned.get(i).getStart(), i);
+                }
+            }
+            int n = words.size();
+            int[] scannedIndex = new int[n];
+            Map<Integer, Integer> indexByStart = new HashMap<>();
+            Map<Integer, Integer> indexByEnd = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Range w = words.get(i);
+                Integer j = scannedByStart.get(w.getStart());
+                scannedIndex[i] = j != null && scanned.get(j).getEnd() == w.getEnd() ? j : -1;
+                indexByStart.put(w.getStart(), i);
+                indexByEnd.put(w.getEnd(), i);
+            }
+            // words which are new, or next to a new neighbor, need scanning
+            int firstDirty = n;
+            int lastDirty = -1;
+            for (int i = 0; i < n; i++) {
+                boolean dirty = scannedIndex[i] < 0
+                        || i > 0 && scannedIndex[i - 1] != scannedIndex[i] - 1
+                        || i < n - 1 && scannedIndex[i + 1] != scannedIndex[i] + 1;
+                if (!dirty) continue;
+                firstDirty = Math.min(firstDirty, i);
+                lastDirty = i;
+            }
+            List<Range> matches = new ArrayList<>();
+            if (scanned != null) {
+                for (Range m : session.getImplicitNames()) {
+                    Integer first = indexByStart.get(m.getStart());
+                    Integer last = indexByEnd.get(m.getEnd());
+                    if (first == null || last == null) continue;
+                    // its words are all still there, and haven't changed
+                    if (first > lastDirty || last < firstDirty) {
+                        matches.add(m);
+                    }
+                }
+            }
+            if (lastDirty >= 0) {
+                int maxLength = 1;
+                for (PhraseMatcher<IngredientIndex.Entry> m : matchers) {
+                    maxLength = Math.max(maxLength, m.getMaxLength());
+                }
+                int from = Math.max(0, firstDirty - maxLength + 1);
+                int to = Math.min(n, lastDirty + maxLength);
+                int dirtyStart = words.get(firstDirty).getStart();
+                int dirtyEnd = words.get(lastDirty).getEnd();
+                for (Range m : findAllMatches(words.subList(from, to), tokens.subList(from, to), matchers)) {
+                    // the others were found last time
+                    if (m.getEnd() > dirtyStart && m.getStart() < dirtyEnd) {
+                        matches.add(m);
                     }
                 }
             }
+            session.rememberImplicitNames(words, matches);
+            return findBestMatch(matches);
         }
 
-        return best == null ? Optional.empty() : Optional.of(best.range);
-    }
-
-    public List<Phrase> buildPhrases(List<Phrase> phrases) {
-        List<Phrase> options = new ArrayList<>(phrases);
-
-        for (int i = 0; i < phrases.size(); i++) {
-            for (int j = i + 1; j < phrases.size(); j++) {
-                Optional<Phrase> phrase = phrases
-                        .subList(i, j + 1)
-                        .stream()
-                        .reduce(Phrase::merge);
-                phrase.ifPresent(options::add);
+        private RecognizedItem recognize(int index, int cursor, boolean withSuggestions) {
+            String raw = raws.get(index);
+            RawIngredientDissection d = dissections.get(index);
+            if (d == null) return null;
+            RecognizedItem item = new RecognizedItem(raw, cursor);
+            List<Range> sections = new ArrayList<>(3);
+            RawIngredientDissection.Section secAmount = d.getQuantity();
+            if (secAmount != null) {
+                // there's an amount
+                Range r = findRemembered(secAmount, RecognizedItem.Type.AMOUNT);
+                if (r == null) {
+                    r = new RecognizedItem.Range(
+                            secAmount.getStart(),
+                            secAmount.getEnd(),
+                            RecognizedItem.Type.AMOUNT
+                    ).withValue(NumberUtils.parseNumber(secAmount.getText()));
+                }
+                sections.add(r);
+            }
+            RawIngredientDissection.Section secUnit = d.getUnits();
+            if (secUnit != null) {
+                // there's an explicit unit
+                Range r = findRemembered(secUnit, RecognizedItem.Type.UNIT, RecognizedItem.Type.NEW_UNIT);
+                if (r == null) {
+                    Optional<Long> ouom = findUnitId(secUnit.getText());
+                    r = new RecognizedItem.Range(
+                            secUnit.getStart(),
+                            secUnit.getEnd(),
+                            ouom.isPresent()
+                                    ? RecognizedItem.Type.UNIT
+                                    : RecognizedItem.Type.NEW_UNIT,
+                            ouom.orElse(null)
+                    );
+                }
+                sections.add(r);
+            }
+            RawIngredientDissection.Section secName = d.getName();
+            if (secName != null) {
+                // there's an explicit name
+                Range r = findRemembered(secName, RecognizedItem.Type.ITEM, RecognizedItem.Type.NEW_ITEM);
+                if (r == null) {
+                    Optional<Long> oing = findIngredientId(secName.getText());
+                    r = new RecognizedItem.Range(
+                            secName.getStart(),
+                            secName.getEnd(),
+                            oing.isPresent()
+                                    ? RecognizedItem.Type.ITEM
+                                    : RecognizedItem.Type.NEW_ITEM,
+                            oing.orElse(null)
+                    );
+                }
+                sections.add(r);
+            }
+            if (session != null) session.rememberSections(sections);
+            // copies, so the remembered ones aren't changed
+            sections.forEach(r -> item.withRange(new Range(
+                    r.getStart(),
+                    r.getEnd(),
+                    r.getType(),
+                    r.getValue())));
+            int idxNameStart = -1;
+            if (secName != null) {
+                idxNameStart = secName.getStart();
+            } else if (!raw.contains("\"")) {
+                // no name, so see if there's an implicit one
+                Optional<Range> matched = findImplicitName(
+                        item.unrecognizedWords(),
+                        raw);
+                // TODO: Break out pieces and test for item service
+                // This line means that when we have a match, we get no more suggestions, which is not the behavior we want
+                // idxNameStart = matched.get().getStart();
+                matched.ifPresent(m -> item.withRange(new Range(
+                        m.getStart(),
+                        m.getEnd(),
+                        m.getType(),
+                        m.getValue())));
+            }
+            if (secAmount != null && secUnit == null && !raw.contains("_")) {
+                // there's an amount, but no explicit unit, so see if there's an implicit one
+                for (RecognizedItem.Range r : item.unrecognizedWords()) {
+                    // unit must precede name, so abort if we get there
+                    if (idxNameStart >= 0 && idxNameStart < r.getStart()) break;
+                    Optional<Long> ouom = findUnitId(
+                            raw.substring(r.getStart(), r.getEnd()));
+                    if (!ouom.isPresent()) continue;
+                    item.withRange(r.of(RecognizedItem.Type.UNIT).withValue(ouom.get()));
+                    break;
+                }
+            }
+            if (withSuggestions && idxNameStart < 0) { // there's no name, explicit or implicit
+                // based on cursor position, see if we can suggest any names
+                // start with looking backwards for a quote
+                int start = raw.lastIndexOf('"', item.getCursor());
+                boolean hasQuote = true;
+                boolean hasSpace = false;
+                if (start < 0) { // look backwards for a non-trailing space
+                    int end = item.getCursor() - 1;
+                    while (Character.isWhitespace(raw.charAt(end))) end--;
+                    start = raw.lastIndexOf(' ', end);
+                    hasQuote = false;
+                    hasSpace = true;
+                }
+                if (start < 0) { // whole prefix, i guess
+                    start = 0;
+                    hasQuote = false;
+                    hasSpace = false;
+                }
+                int replaceStart = hasSpace ? start + 1 : start;
+                String search = raw.substring(hasQuote ? replaceStart + 1 : replaceStart, item.getCursor())
+                        .trim()
+                        .toLowerCase();
+                if (!search.isEmpty()) {
+                    String singularSearch = EnglishUtils.unpluralize(search);
+                    List<IngredientIndex.Entry> matches = findSuggestions(search);
+                    String lcRawPrefix = raw.toLowerCase()
+                            .substring(0, item.getCursor() - search.length());
+                    matches.forEach(i -> {
+                        // this should probably check all locations the
+                        // search matches, not just the first...
+                        String lcName = i.getName().toLowerCase();
+                        int idx = lcName.indexOf(singularSearch);
+                        if (idx < 0) {
+                            // a typo-tolerant match, so use where it's closest
+                            EditDistance.Match m = EditDistance.bestSubstringMatch(
+                                    singularSearch,
+                                    lcName,
+                                    getMaxTypos(search));
+                            idx = m == null ? 0 : m.getStart();
+                        }
+                        int len = RawUtils.lengthOfLongestSharedSuffix(
+                                lcName.subSequence(0, idx),
+                                lcRawPrefix
+                        );
+                        // no leading spaces in the replaced range
+                        while (len > 0 && raw.charAt(replaceStart - len) == ' ') {
+                            len--;
+                        }
+                        item.withSuggestion(new Suggestion(
+                                i.getName(),
+                                new RecognizedItem.Range(
+                                        replaceStart - len,
+                                        item.getCursor(),
+                                        RecognizedItem.Type.ITEM,
+                                        i.getId()
+                                )
+                        ));
+                    });
+                }
             }
+            return item;
         }
-        options.sort(Phrase.BY_POSITION);
-        return options;
+
     }
+
 }
@@ -0,0 +1,39 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Task;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * I tell the {@link PlanChangeLog} about {@link Task} writes. Like
+ * {@link IngredientIndexListener}, I'm created during EntityManagerFactory
+ * bootstrap, so the log is looked up lazily.
+ */
+public class PlanChangeListener {
+
+    @Autowired
+    private ObjectProvider<PlanChangeLog> logProvider;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Task task) {
+        onChange(task, false);
+    }
+
+    @PostRemove
+    public void onRemove(Task task) {
+        onChange(task, true);
+    }
+
+    private void onChange(Task task, boolean removed) {
+        if (logProvider == null) return;
+        PlanChangeLog log = logProvider.getIfAvailable();
+        if (log == null) return;
+        log.onChange(task, removed);
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.PlanChange;
+import com.brennaswitzer.cookbook.domain.Task;
+import com.brennaswitzer.cookbook.domain.TaskList;
+import com.brennaswitzer.cookbook.repositories.PlanChangeRepository;
+import com.brennaswitzer.cookbook.repositories.TaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * I am the per-plan log of task changes, which plan clients poll for what's
+ * changed since the last sequence number they saw. Each plan has its own
+ * sequence, which is bumped once per transaction that changes any of its
+ * tasks, and those tasks are logged against the new number.
+ * <p>
+ * {@link PlanChangeListener} tells me about every task write, including the
+ * parents {@code markDirty} bumps, and I write them all to the log just
+ * before the transaction commits. A task which moved to another plan is
+ * logged as removed from the one it left. Writing bumps the plan's sequence, which
+ * locks the plan's row until commit, so sequence numbers are assigned in
+ * commit order, and a client can never miss a change by polling between two
+ * overlapping transactions.
+ */
+@Service
+public class PlanChangeLog {
+
+    private class PendingChanges implements TransactionSynchronization {
+
+        private final Set<Task> saved = new LinkedHashSet<>();
+
+        // by the time they're written, removed tasks may not be in their plan
+        // anymore, so their plan is found when they're removed
+        private final Map<Task, Long> removed = new LinkedHashMap<>();
+
+        // tasks which moved to another plan are removed from the ones they left
+        private final Map<Task, Set<Long>> left = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            writePendingChanges();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PlanChangeLog.this);
+        }
+
+    }
+
+    @Autowired
+    private TaskRepository taskRepo;
+
+    @Autowired
+    private PlanChangeRepository changeRepo;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * I return the plan's current sequence number, which is zero if it has
+     * never changed (or doesn't exist). This is a single primary key lookup,
+     * so it's cheap to check before asking for changes.
+     */
+    public long getSeq(Long planId) {
+        Long seq = taskRepo.getChangeSeqById(planId);
+        return seq == null ? 0 : seq;
+    }
+
+    /**
+     * I return the plan's logged changes after the passed sequence number, in
+     * sequence order.
+     */
+    public List<PlanChange> getChangesSince(Long planId, long seq) {
+        return changeRepo.findByPlanIdAndSeqGreaterThanOrderBySeq(planId, seq);
+    }
+
+    void onChange(Task task, boolean removed) {
+        // without a transaction, there's nothing to write the log with
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        Long formerPlanId = task.takeFormerPlanId();
+        if (formerPlanId != null) {
+            pending.left.computeIfAbsent(task, t -> new LinkedHashSet<>())
+                    .add(formerPlanId);
+        }
+        if (removed) {
+            pending.saved.remove(task);
+            pending.removed.put(task, getPlanId(task));
+        } else {
+            pending.removed.remove(task);
+            pending.saved.add(task);
+        }
+    }
+
+    /**
+     * I write the current transaction's pending changes to the log. This
+     * happens when it commits, but tests which roll back can call me directly.
+     */
+    void writePendingChanges() {
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) return;
+        // so changes Hibernate hasn't written yet are pending too
+        entityManager.flush();
+        // ordered by plan id, so concurrent transactions lock plans in the
+        // same order, and can't deadlock
+        Map<Long, Map<Long, Boolean>> byPlan = new TreeMap<>();
+        for (Task task : pending.saved) {
+            addChange(byPlan, getPlanId(task), task.getId(), false);
+        }
+        pending.removed.forEach((task, planId) ->
+                addChange(byPlan, planId, task.getId(), true));
+        pending.left.forEach((task, planIds) -> {
+            Long planId = pending.removed.containsKey(task)
+                    ? pending.removed.get(task)
+                    : getPlanId(task);
+            for (Long left : planIds) {
+                // it may have come back
+                if (left.equals(planId)) continue;
+                addChange(byPlan, left, task.getId(), true);
+            }
+        });
+        pending.saved.clear();
+        pending.removed.clear();
+        pending.left.clear();
+        byPlan.forEach((planId, changes) -> {
+            // the plan itself was removed
+            if (taskRepo.incrementChangeSeqById(planId) == 0) return;
+            long seq = getSeq(planId);
+            changes.forEach((taskId, removed) ->
+                    changeRepo.save(new PlanChange(planId, seq, taskId, removed)));
+        });
+    }
+
+    private static void addChange(Map<Long, Map<Long, Boolean>> byPlan, Long planId, Long taskId, boolean removed) {
+        if (planId == null || taskId == null) return;
+        byPlan.computeIfAbsent(planId, id -> new LinkedHashMap<>())
+                .put(taskId, removed);
+    }
+
+    private static Long getPlanId(Task task) {
+        TaskList plan = task.getTaskList();
+        // an orphaned task isn't in any plan
+        return plan == null ? null : plan.getId();
+    }
+
+}
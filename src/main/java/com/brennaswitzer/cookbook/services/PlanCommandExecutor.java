@@ -0,0 +1,238 @@
+package com.brennaswitzer.cookbook.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * I apply changes to a plan one at a time, so concurrent requests changing the
+ * same plan never collide on a task's version, as when two people check off
+ * items under the same parent. Each plan has a single writer, which takes
+ * every command waiting for it, and runs them all in one transaction.
+ * Different plans' writers run in parallel, up to a limit, with each writer
+ * running one batch before it lets another plan have a turn.
+ * <p>
+ * If a batch fails, it's rolled back and its commands are rerun, each in its
+ * own transaction, so only the failing command's caller sees the error. Since
+ * they may be rerun, commands should only change the database. Each command
+ * runs as the user who submitted it.
+ * <p>
+ * A few writers are shared by all the plans, and a caller only waits so long
+ * for its command, so a stuck plan can't tie up every request thread.
+ * Callers are responsible for confining a command to the plan it's executed
+ * for (see {@link PlanService#applyToPlan}), or it would run on the wrong
+ * plan's writer.
+ * <p>
+ * I only know about this node's writes, so changes made on other nodes, or
+ * not through me, may still conflict.
+ */
+@SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+@Service
+public class PlanCommandExecutor {
+
+    static final int MAX_BATCH = 50;
+
+    // each writer holds a connection while it runs a batch
+    static final int WRITER_THREADS = 4;
+
+    private static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private static final ThreadLocal<Long> currentPlanId = new ThreadLocal<>();
+
+    private static class Command<T> {
+
+        private final Supplier<T> body;
+
+        private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private T value;
+
+        private Command(Supplier<T> body) {
+            this.body = body;
+        }
+
+        private void run() {
+            SecurityContextHolder.setContext(securityContext);
+            try {
+                value = body.get();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }
+
+        // only once the batch has committed
+        private void complete() {
+            result.complete(value);
+        }
+
+    }
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // a plan has an entry exactly when it has a drain queued or running
+    private final Map<Long, Queue<Command<?>>> queuesByPlan = new ConcurrentHashMap<>();
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    // a plan has at most one drain queued or running, so this is bounded by
+    // the plans
+    private final ThreadPoolExecutor writers = new ThreadPoolExecutor(
+            WRITER_THREADS,
+            WRITER_THREADS,
+            1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "plan-writer-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private long timeoutMillis = DEFAULT_TIMEOUT;
+
+    public PlanCommandExecutor() {
+        writers.allowCoreThreadTimeOut(true);
+    }
+
+    void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    // how many of the plan's commands are waiting for its writer
+    int getWaitingCount(Long planId) {
+        int[] count = new int[1];
+        queuesByPlan.computeIfPresent(planId, (id, queue) -> {
+            count[0] = queue.size();
+            return queue;
+        });
+        return count[0];
+    }
+
+    // how many plans are waiting for a writer
+    int getWaitingDrainCount() {
+        return writers.getQueue().size();
+    }
+
+    /**
+     * I run the command on the plan's writer, wait for its transaction to
+     * commit, and return its result. If it fails, its exception is rethrown.
+     * A command which itself executes another for its own plan runs it
+     * immediately, as part of its own transaction, rather than waiting on
+     * itself. It may not execute one for any other plan, as that would either
+     * skip the other plan's writer, or wait on it while holding its own.
+     * <p>
+     * If the command hasn't finished within the timeout, I give up with an
+     * {@link IllegalStateException}. If it hadn't started yet, it never
+     * will; otherwise it may still be applied.
+     */
+    public <T> T execute(Long planId, Supplier<T> body) {
+        Long current = currentPlanId.get();
+        if (current != null) {
+            if (!current.equals(planId)) {
+                throw new IllegalStateException("Plan " + current + "'s commands can't change plan " + planId);
+            }
+            return body.get();
+        }
+        Command<T> cmd = new Command<>(body);
+        boolean[] start = new boolean[1];
+        queuesByPlan.compute(planId, (id, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                start[0] = true;
+            }
+            queue.add(cmd);
+            return queue;
+        });
+        if (start[0]) {
+            writers.execute(() -> drain(planId));
+        }
+        try {
+            return cmd.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            boolean[] dequeued = new boolean[1];
+            queuesByPlan.computeIfPresent(planId, (id, queue) -> {
+                dequeued[0] = queue.remove(cmd);
+                return queue;
+            });
+            throw new IllegalStateException(dequeued[0]
+                    ? "Timed out waiting for plan " + planId + "'s writer; the change was not made"
+                    : "Timed out waiting for a change to plan " + planId + "; it may still be applied", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting on plan " + planId, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * I run one batch of the plan's commands. If more are waiting, I go to the
+     * back of the line for another writer, so busy plans take turns with the
+     * rest, rather than keeping their writers.
+     */
+    private void drain(Long planId) {
+        List<Command<?>> batch = new ArrayList<>();
+        queuesByPlan.computeIfPresent(planId, (id, queue) -> {
+            while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            return queue;
+        });
+        if (!batch.isEmpty()) {
+            currentPlanId.set(planId);
+            try {
+                runBatch(batch);
+            } finally {
+                currentPlanId.remove();
+            }
+        }
+        boolean[] more = new boolean[1];
+        queuesByPlan.computeIfPresent(planId, (id, queue) -> {
+            more[0] = !queue.isEmpty();
+            return more[0] ? queue : null;
+        });
+        if (more[0]) {
+            writers.execute(() -> drain(planId));
+        }
+    }
+
+    private void runBatch(List<Command<?>> batch) {
+        try {
+            new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> batch.forEach(Command::run));
+            batch.forEach(Command::complete);
+        } catch (RuntimeException | Error e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            for (Command<?> cmd : batch) {
+                runBatch(Collections.singletonList(cmd));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.message.PlanMessage;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * I fan out {@link PlanMessage}s to everyone viewing a plan, as Server-Sent
+ * Events. I only know about this node's subscribers, so with more than one
+ * node, clients must still poll for changes made elsewhere.
+ * <p>
+ * Each subscriber has a bounded buffer, which is drained by one of a few
+ * background threads, so a slow client never holds up the request that
+ * changed the plan.
+ * If a subscriber's buffer fills up, its messages are dropped, and it's sent
+ * a single "resync" event instead, after which it must reload the plan. Until
+ * that's sent, newer messages are dropped too, as the reload will see them.
+ * <p>
+ * Access is checked when subscribing. {@link TaskService} unsubscribes users
+ * whose grant on a plan is removed. The events endpoint is kept out of
+ * open-in-view (see {@link com.brennaswitzer.cookbook.config.WebMvcConfig}),
+ * so an open subscription doesn't hold a database connection.
+ */
+@Service
+public class PlanEventBroadcaster {
+
+    static final int MAX_BUFFERED = 100;
+
+    private static final int SENDER_THREADS = 4;
+
+    private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    static final String RESYNC = "resync";
+
+    private class Subscriber {
+
+        private final Long planId;
+
+        private final Long userId;
+
+        private final SseEmitter emitter = createEmitter();
+
+        private final Queue<SseEmitter.SseEventBuilder> buffer = new ArrayDeque<>();
+
+        private boolean draining;
+
+        // the buffered resync event, until it's sent
+        private SseEmitter.SseEventBuilder resync;
+
+        private Subscriber(Long planId, Long userId) {
+            this.planId = planId;
+            this.userId = userId;
+        }
+
+        private synchronized void enqueue(SseEmitter.SseEventBuilder event) {
+            // it's already draining
+            if (resync != null) return;
+            if (buffer.size() >= MAX_BUFFERED) {
+                buffer.clear();
+                resync = SseEmitter.event().name(RESYNC).data(planId);
+                buffer.add(resync);
+            } else {
+                buffer.add(event);
+            }
+            if (draining) return;
+            draining = true;
+            sender.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = buffer.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                    if (event == resync) resync = null;
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // they went away
+                    remove(this);
+                    return;
+                }
+            }
+        }
+
+    }
+
+    private final Map<Long, Set<Subscriber>> subscribersByPlan = new ConcurrentHashMap<>();
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor sender = new ThreadPoolExecutor(
+            SENDER_THREADS,
+            SENDER_THREADS,
+            1, TimeUnit.MINUTES,
+            // a subscriber has at most one drain queued, so it's bounded by them
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "plan-events-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    public PlanEventBroadcaster() {
+        sender.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * I subscribe the user to the plan's messages. The caller must already
+     * have checked that the user may view the plan.
+     */
+    public SseEmitter subscribe(Long planId, Long userId) {
+        Subscriber sub = new Subscriber(planId, userId);
+        sub.emitter.onCompletion(() -> remove(sub));
+        sub.emitter.onTimeout(() -> remove(sub));
+        sub.emitter.onError(e -> remove(sub));
+        subscribersByPlan.computeIfAbsent(planId, id -> ConcurrentHashMap.newKeySet())
+                .add(sub);
+        return sub.emitter;
+    }
+
+    /**
+     * I send the message to everyone subscribed to the plan. Messages should
+     * only be published once the change they describe has committed.
+     */
+    public void publish(Long planId, PlanMessage message) {
+        if (message == null) return;
+        Set<Subscriber> subs = subscribersByPlan.get(planId);
+        if (subs == null) return;
+        for (Subscriber sub : subs) {
+            sub.enqueue(SseEmitter.event()
+                    .name(message.getType())
+                    .data(message, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    /**
+     * I disconnect the user from the plan, because they aren't allowed to
+     * view it anymore.
+     */
+    public void unsubscribe(Long planId, Long userId) {
+        Set<Subscriber> subs = subscribersByPlan.get(planId);
+        if (subs == null) return;
+        for (Subscriber sub : subs) {
+            if (!sub.userId.equals(userId)) continue;
+            remove(sub);
+            sub.emitter.complete();
+        }
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(TIMEOUT);
+    }
+
+    int getSubscriberCount(Long planId) {
+        Set<Subscriber> subs = subscribersByPlan.get(planId);
+        return subs == null ? 0 : subs.size();
+    }
+
+    private void remove(Subscriber sub) {
+        subscribersByPlan.computeIfPresent(sub.planId, (id, subs) -> {
+            subs.remove(sub);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+}
@@ -1,26 +1,33 @@
 package com.brennaswitzer.cookbook.services;
 
 import com.brennaswitzer.cookbook.domain.*;
-import com.brennaswitzer.cookbook.message.MutatePlanTree;
-import com.brennaswitzer.cookbook.message.PlanMessage;
+import com.brennaswitzer.cookbook.message.*;
 import com.brennaswitzer.cookbook.payload.PlanBucketInfo;
+import com.brennaswitzer.cookbook.payload.PlanChanges;
 import com.brennaswitzer.cookbook.payload.TaskInfo;
+import com.brennaswitzer.cookbook.payload.TaskInfoStream;
 import com.brennaswitzer.cookbook.repositories.PlanBucketRepository;
 import com.brennaswitzer.cookbook.repositories.TaskListRepository;
 import com.brennaswitzer.cookbook.repositories.TaskRepository;
 import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
+import lombok.Value;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
 @Service
@@ -42,32 +49,147 @@ public class PlanService {
     @Autowired
     private ItemService itemService;
 
+    @Autowired
+    private PlanChangeLog changeLog;
+
+    @Autowired
+    private PlanEventBroadcaster eventBroadcaster;
+
     protected Task getTaskById(Long id) {
         return getTaskById(id, AccessLevel.VIEW);
     }
 
     protected Task getTaskById(Long id, AccessLevel requiredAccess) {
         Task task = taskRepo.getReferenceById(id);
-        task.getTaskList().ensurePermitted(
-                principalAccess.getUser(),
-                requiredAccess
-        );
+        ensurePermitted(task.getTaskList(), requiredAccess);
         return task;
     }
 
     protected TaskList getPlanById(Long id, @SuppressWarnings("SameParameterValue") AccessLevel requiredAccess) {
         TaskList plan = planRepo.getReferenceById(id);
+        ensurePermitted(plan, requiredAccess);
+        return plan;
+    }
+
+    private void ensurePermitted(TaskList plan, AccessLevel requiredAccess) {
+        PlanScope scope = (PlanScope) TransactionSynchronizationManager.getResource(SCOPE_KEY);
+        if (scope != null) {
+            if (!scope.getPlanId().equals(plan.getId())) {
+                throw new IllegalArgumentException("Only plan " + scope.getPlanId() + " may be changed");
+            }
+            if (scope.getAccess() != null && scope.getAccess().includes(requiredAccess)) return;
+        }
         plan.ensurePermitted(
                 principalAccess.getUser(),
                 requiredAccess
         );
-        return plan;
     }
 
+    private static final Object SCOPE_KEY = PlanService.class.getName() + ".scope";
+
+    /**
+     * While a request for a plan is being applied, it's the only plan that
+     * may be changed. For a batch, access to it has also already been checked.
+     */
+    @Value
+    private static class PlanScope {
+        Long planId;
+        AccessLevel access;
+    }
+
+    /**
+     * I run the passed command, requiring that every task it touches is in
+     * the passed plan. Requests name their plan in the URL, and that's where
+     * their changes are published and serialized, so a task from elsewhere
+     * is refused, not changed. Access is still checked as usual.
+     */
+    public <T> T applyToPlan(Long planId, Supplier<T> command) {
+        return inScope(new PlanScope(planId, null), command);
+    }
+
+    private <T> T inScope(PlanScope scope, Supplier<T> command) {
+        PlanScope outer = (PlanScope) TransactionSynchronizationManager.getResource(SCOPE_KEY);
+        if (outer != null) {
+            if (!outer.getPlanId().equals(scope.getPlanId())) {
+                throw new IllegalArgumentException("Only plan " + outer.getPlanId() + " may be changed");
+            }
+            TransactionSynchronizationManager.unbindResource(SCOPE_KEY);
+        }
+        TransactionSynchronizationManager.bindResource(SCOPE_KEY, scope);
+        try {
+            return command.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(SCOPE_KEY);
+            if (outer != null) {
+                TransactionSynchronizationManager.bindResource(SCOPE_KEY, outer);
+            }
+        }
+    }
+
+    /**
+     * I apply the passed actions to the plan, in order, and return their
+     * messages. It all happens in one transaction, and access to the plan is
+     * checked once, up front, instead of for every task each action touches.
+     */
+    public List<PlanMessage> applyBatch(Long planId, List<?> actions) {
+        AccessLevel access = AccessLevel.CHANGE;
+        for (Object a : actions) {
+            if (a instanceof CreatePlanBucket
+                    || a instanceof UpdatePlanBucket
+                    || a instanceof DeletePlanBucket) {
+                access = AccessLevel.ADMINISTER;
+                break;
+            }
+        }
+        getPlanById(planId, access);
+        return inScope(new PlanScope(planId, access), () -> {
+            List<PlanMessage> messages = new ArrayList<>(actions.size());
+            for (Object a : actions) {
+                messages.add(applyAction(planId, a));
+            }
+            return messages;
+        });
+    }
+
+    private PlanMessage applyAction(Long planId, Object action) {
+        if (action instanceof CreatePlanTreeItem) {
+            val a = (CreatePlanTreeItem) action;
+            return createItem(a.getId(), a.getParentId(), a.getAfterId(), a.getName());
+        } else if (action instanceof RenamePlanTreeItem) {
+            val a = (RenamePlanTreeItem) action;
+            return renameItem(a.getId(), a.getName());
+        } else if (action instanceof SetPlanTreeItemStatus) {
+            val a = (SetPlanTreeItemStatus) action;
+            return setItemStatus(a.getId(), a.getStatus());
+        } else if (action instanceof AssignPlanTreeItemBucket) {
+            val a = (AssignPlanTreeItemBucket) action;
+            return assignItemBucket(a.getId(), a.getBucketId());
+        } else if (action instanceof MutatePlanTree) {
+            val a = (MutatePlanTree) action;
+            return mutateTree(a.getIds(), a.getParentId(), a.getAfterId());
+        } else if (action instanceof ReorderSubitems) {
+            val a = (ReorderSubitems) action;
+            return resetSubitems(a.getId(), a.getSubitemIds());
+        } else if (action instanceof DeletePlanTreeItem) {
+            return deleteItem(((DeletePlanTreeItem) action).getId());
+        } else if (action instanceof CreatePlanBucket) {
+            val a = (CreatePlanBucket) action;
+            return createBucket(planId, a.getId(), a.getName(), a.getDate());
+        } else if (action instanceof UpdatePlanBucket) {
+            val a = (UpdatePlanBucket) action;
+            return updateBucket(planId, a.getId(), a.getName(), a.getDate());
+        } else if (action instanceof DeletePlanBucket) {
+            return deleteBucket(planId, ((DeletePlanBucket) action).getId());
+        }
+        throw new IllegalArgumentException("Unknown plan action: " + action);
+    }
+
+    @Transactional(readOnly = true)
     public List<Task> getTreeById(Long id) {
         return getTreeById(getTaskById(id, AccessLevel.VIEW));
     }
 
+    @Transactional(readOnly = true)
     public List<Task> getTreeById(Task task) {
         List<Task> tasks = treeHelper(task);
         for (Task t : tasks) {
@@ -91,14 +213,117 @@ public class PlanService {
         }
     }
 
-    public List<Task> getTreeDeltasById(Long id, Instant cutoff) {
+    /**
+     * I return the same thing as {@code TaskInfo.fromTasks(getTreeById(id))},
+     * but the whole subtree, with its component links and buckets, is loaded
+     * with a single recursive query, and assembled in memory, instead of
+     * walking the lazy subtask and component collections node by node.
+     */
+    @Transactional(readOnly = true)
+    public List<TaskInfo> getTreeInfoById(Long id) {
+        getTaskById(id, AccessLevel.VIEW);
+        List<TaskInfo> result = new ArrayList<>();
+        taskRepo.findTreeInfoById(id).forEachRemaining(result::add);
+        return result;
+    }
+
+    /**
+     * I return the same thing as {@link #getTreeInfoById}, but each TaskInfo
+     * is only built as it's written out, and the tree is let go of as it's
+     * written, so a big plan is never in memory twice over.
+     */
+    @Transactional(readOnly = true)
+    public TaskInfoStream streamTreeInfoById(Long id) {
+        getTaskById(id, AccessLevel.VIEW);
+        return new TaskInfoStream(taskRepo.findTreeInfoById(id));
+    }
+
+    /**
+     * I return the plan's tasks which have changed since the cutoff: those in
+     * its tree, and those at the top of its trash. Only the changed tasks are
+     * loaded, via their denormalized plan, not the whole tree.
+     */
+    @Transactional(readOnly = true)
+    public List<TaskInfo> getTreeDeltasById(Long id, Instant cutoff) {
         val plan = getPlanById(id, AccessLevel.VIEW);
-        return Stream.concat(
-                        getTreeById(plan).stream(),
-                        plan.getTrashBinTasks().stream()
-                )
-                .filter(t -> t.getUpdatedAt().isAfter(cutoff))
-                .collect(Collectors.toList());
+        List<Long> ids = new ArrayList<>();
+        if (plan.getUpdatedAt().isAfter(cutoff)) ids.add(id);
+        for (Task t : taskRepo.findByPlanIdAndUpdatedAtAfter(id, cutoff)) {
+            if (t.isInTrashBin() || !isUnderTrash(t)) ids.add(t.getId());
+        }
+        return taskRepo.findInfoByIdIn(ids);
+    }
+
+    private static boolean isUnderTrash(Task task) {
+        for (Task t = task.getParent(); t != null; t = t.getParent()) {
+            if (t.isInTrashBin()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * I subscribe the current user to the plan's messages, as Server-Sent
+     * Events, if they're allowed to view it.
+     */
+    @Transactional(readOnly = true)
+    public SseEmitter subscribeToEvents(Long id) {
+        getPlanById(id, AccessLevel.VIEW);
+        return eventBroadcaster.subscribe(id, principalAccess.getId());
+    }
+
+    /**
+     * I return the plan's current change sequence number, for clients to
+     * start polling {@link #getChangesSince} from.
+     */
+    @Transactional(readOnly = true)
+    public long getChangeSeq(Long id) {
+        getPlanById(id, AccessLevel.VIEW);
+        return changeLog.getSeq(id);
+    }
+
+    /**
+     * I return the plan's tasks which have changed since the passed sequence
+     * number, and the ids of those which have been removed. If nothing has
+     * changed, only the plan's sequence number is looked up. If the log no
+     * longer goes back that far, the result says to reload instead.
+     */
+    @Transactional(readOnly = true)
+    public PlanChanges getChangesSince(Long id, long seq) {
+        getPlanById(id, AccessLevel.VIEW);
+        PlanChanges result = new PlanChanges();
+        long current = changeLog.getSeq(id);
+        result.setSeq(current);
+        if (current <= seq) return result;
+        List<PlanChange> changes = changeLog.getChangesSince(id, seq);
+        // every sequence number has changes, unless they've been trimmed
+        if (changes.isEmpty() || changes.get(0).getSeq() > seq + 1) {
+            result.setReload(true);
+            return result;
+        }
+        Map<Long, Boolean> removedById = new LinkedHashMap<>();
+        for (PlanChange c : changes) {
+            // a concurrent commit's changes will come next time
+            if (c.getSeq() > current) break;
+            removedById.remove(c.getTaskId());
+            removedById.put(c.getTaskId(), c.isRemoved());
+        }
+        List<Long> ids = new ArrayList<>();
+        removedById.forEach((taskId, removed) -> {
+            if (!removed) ids.add(taskId);
+        });
+        Map<Long, TaskInfo> infos = new HashMap<>();
+        for (TaskInfo info : taskRepo.findInfoByIdIn(ids)) {
+            infos.put(info.getId(), info);
+        }
+        removedById.forEach((taskId, removed) -> {
+            TaskInfo info = removed ? null : infos.get(taskId);
+            if (info == null) {
+                result.getDeletedIds().add(taskId);
+            } else {
+                result.getItems().add(info);
+            }
+        });
+        return result;
     }
 
     public PlanMessage mutateTree(List<Long> ids, Long parentId, Long afterId) {
@@ -185,7 +410,7 @@ public class PlanService {
 
     public PlanMessage updateBucket(Long planId, Long id, String name, LocalDate date) {
         TaskList plan = getPlanById(planId, AccessLevel.ADMINISTER);
-        PlanBucket bucket = bucketRepo.getReferenceById(id);
+        PlanBucket bucket = getBucket(plan, id);
         bucket.setName(name);
         bucket.setDate(date);
         PlanMessage m = new PlanMessage();
@@ -197,7 +422,7 @@ public class PlanService {
 
     public PlanMessage deleteBucket(Long planId, Long id) {
         TaskList plan = getPlanById(planId, AccessLevel.ADMINISTER);
-        PlanBucket bucket = bucketRepo.getReferenceById(id);
+        PlanBucket bucket = getBucket(plan, id);
         plan.getBuckets().remove(bucket);
         bucketRepo.delete(bucket);
         PlanMessage m = new PlanMessage();
@@ -219,10 +444,18 @@ public class PlanService {
         Task task = getTaskById(id, AccessLevel.CHANGE);
         task.setBucket(bucketId == null
                 ? null
-                : bucketRepo.getReferenceById(bucketId));
+                : getBucket(task.getTaskList(), bucketId));
         return buildUpdateMessage(task);
     }
 
+    private PlanBucket getBucket(TaskList plan, Long id) {
+        PlanBucket bucket = bucketRepo.getReferenceById(id);
+        if (!plan.getId().equals(bucket.getPlan().getId())) {
+            throw new IllegalArgumentException("Bucket " + id + " isn't in plan " + plan.getId());
+        }
+        return bucket;
+    }
+
     private PlanMessage buildUpdateMessage(Task task) {
         PlanMessage m = new PlanMessage();
         m.setId(task.getId());
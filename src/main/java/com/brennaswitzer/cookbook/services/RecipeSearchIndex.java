@@ -0,0 +1,85 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Recipe;
+import com.brennaswitzer.cookbook.util.DialectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * I keep each recipe's full-text {@code search_vector} current on Postgres,
+ * where it's built by the {@code recipe_search_vector} database function from
+ * the recipe's name, labels, ingredients' names, and directions. Recipes saved
+ * in a transaction have their vectors rebuilt, in bulk, just before it
+ * commits. Elsewhere (e.g., H2) I do nothing, and full-text searches are
+ * answered in-process by {@link com.brennaswitzer.cookbook.repositories.RecipeSearchRepositoryImpl}.
+ * <p>
+ * A pantry item's rename doesn't rebuild the vectors of recipes using it.
+ */
+@SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
+@Service
+public class RecipeSearchIndex {
+
+    // the same size as the entities' @BatchSize
+    private static final int BATCH_SIZE = 100;
+
+    private class PendingChanges implements TransactionSynchronization {
+
+        private final Set<Recipe> recipes = new LinkedHashSet<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // so the function sees the recipes as they'll be committed
+            entityManager.flush();
+            List<Long> ids = new ArrayList<>(recipes.size());
+            for (Recipe r : recipes) {
+                if (r.getId() != null) ids.add(r.getId());
+            }
+            for (int i = 0, l = ids.size(); i < l; i += BATCH_SIZE) {
+                entityManager.createNativeQuery("update ingredient\n" +
+                                "set search_vector = recipe_search_vector(id)\n" +
+                                "where id in (:ids)")
+                        .setParameter("ids", ids.subList(i, Math.min(l, i + BATCH_SIZE)))
+                        .executeUpdate();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(RecipeSearchIndex.this);
+        }
+
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private volatile Boolean supported;
+
+    void onChange(Recipe recipe) {
+        if (!isSupported()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.recipes.add(recipe);
+    }
+
+    private boolean isSupported() {
+        if (supported == null) {
+            supported = DialectUtils.isPostgres(entityManager);
+        }
+        return supported;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.Recipe;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * I tell the {@link RecipeSearchIndex} about {@link Recipe} writes. Label and
+ * ingredient changes bump the recipe's version, so they're updates too. Like
+ * {@link IngredientIndexListener}, the index is looked up lazily.
+ */
+public class RecipeSearchIndexListener {
+
+    @Autowired
+    private ObjectProvider<RecipeSearchIndex> indexProvider;
+
+    @PrePersist
+    @PreUpdate
+    public void onSave(Recipe it) {
+        if (indexProvider == null) return;
+        RecipeSearchIndex index = indexProvider.getIfAvailable();
+        if (index == null) return;
+        index.onChange(it);
+    }
+
+}
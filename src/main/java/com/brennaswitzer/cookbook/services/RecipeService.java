@@ -1,6 +1,7 @@
 package com.brennaswitzer.cookbook.services;
 
 import com.brennaswitzer.cookbook.domain.Recipe;
+import com.brennaswitzer.cookbook.domain.User;
 import com.brennaswitzer.cookbook.repositories.RecipeRepository;
 import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,8 +10,10 @@ import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -79,14 +82,41 @@ public class RecipeService {
     }
 
     public Slice<Recipe> searchRecipes(String scope, String filter, Pageable pageable) {
-        if ("everyone".equals(scope)) {
-            return recipeRepository.searchRecipes(filter, pageable);
-        } else {
-            return recipeRepository.searchRecipesByOwner(
-                    Collections.singletonList(principalAccess.getUser()),
-                    filter,
-                    pageable);
-        }
+        return searchRecipes(scope, filter, false, pageable);
+    }
+
+    public Slice<Recipe> searchRecipes(String scope, String filter, boolean fullText, Pageable pageable) {
+        return searchRecipes(scope, filter, fullText, Collections.emptySet(), pageable);
+    }
+
+    /**
+     * I search either everyone's recipes or just the current user's, by scope.
+     * A full-text search is ranked by relevance, while the default one finds
+     * recipes containing any of the filter's words, name matches first. Only
+     * recipes with all the passed labels are found.
+     */
+    public Slice<Recipe> searchRecipes(String scope, String filter, boolean fullText, Collection<String> labels, Pageable pageable) {
+        Collection<User> owners = ownersOf(scope);
+        return fullText
+                ? recipeRepository.fullTextSearchRecipesByOwner(owners, filter, labels, pageable)
+                : recipeRepository.searchRecipesByOwner(owners, filter, labels, pageable);
+    }
+
+    /**
+     * I count the recipes {@link #searchRecipes(String, String, boolean, Collection, Pageable)}
+     * would find with each label, for drilling down by label.
+     */
+    public Map<String, Long> countLabels(String scope, String filter, boolean fullText, Collection<String> labels) {
+        Collection<User> owners = ownersOf(scope);
+        return fullText
+                ? recipeRepository.fullTextCountLabelsByOwner(owners, filter, labels)
+                : recipeRepository.countLabelsByOwner(owners, filter, labels);
+    }
+
+    private Collection<User> ownersOf(String scope) {
+        return "everyone".equals(scope)
+                ? null
+                : Collections.singletonList(principalAccess.getUser());
     }
 
 }
@@ -0,0 +1,131 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.payload.RecognizedItem;
+import lombok.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * I am a bounded, per-user LRU cache of {@link RecognizedItem}s, keyed by the
+ * raw string, the cursor position, and whether suggestions were requested.
+ * Clients recognize on every keystroke and cursor move, so the same requests
+ * come in over and over.
+ * <p>
+ * A recognized item depends on the pantry items, the units, and the user's own
+ * recipes, so I must be told when they change: {@link IngredientIndex} and
+ * {@link UnitResolver} do that once the changes commit. Cached items are
+ * shared, so callers must not modify them.
+ */
+@Service
+public class RecognitionCache {
+
+    static final int MAX_USERS = 1000;
+
+    static final int MAX_ENTRIES_PER_USER = 250;
+
+    @Value
+    private static class Key {
+        String raw;
+        int cursor;
+        boolean withSuggestions;
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+    }
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    // bumped by every invalidation, so results computed from data which has
+    // since changed aren't stored.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Map<Long, Map<Key, RecognizedItem>> cachesByUser = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Map<Key, RecognizedItem>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<Key, RecognizedItem>> eldest) {
+                    return size() > MAX_USERS;
+                }
+            });
+
+    /**
+     * I return the cached item for the user and request, if there is one,
+     * otherwise I recognize it with the passed supplier, and cache the result.
+     */
+    public RecognizedItem get(Long userId, String raw, int cursor, boolean withSuggestions, Supplier<RecognizedItem> recognizer) {
+        Key key = new Key(raw, cursor, withSuggestions);
+        Map<Key, RecognizedItem> cache = getCache(userId);
+        RecognizedItem item;
+        synchronized (cache) {
+            item = cache.get(key);
+        }
+        if (item != null) {
+            hits.increment();
+            return item;
+        }
+        misses.increment();
+        long gen = generation.get();
+        item = recognizer.get();
+        if (item == null) return null;
+        synchronized (cache) {
+            if (generation.get() == gen) cache.put(key, item);
+        }
+        return item;
+    }
+
+    /**
+     * I discard all cached items for the passed user, after their recipes
+     * change.
+     */
+    public void invalidateUser(Long userId) {
+        generation.incrementAndGet();
+        cachesByUser.remove(userId);
+    }
+
+    /**
+     * I discard all cached items, after a change which affects every user,
+     * such as to a pantry item or a unit.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cachesByUser.clear();
+    }
+
+    /**
+     * I return a number which changes whenever cached items are invalidated,
+     * for others who remember how things were recognized.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Map<Key, RecognizedItem> getCache(Long userId) {
+        return cachesByUser.computeIfAbsent(userId, id ->
+                new LinkedHashMap<Key, RecognizedItem>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, RecognizedItem> eldest) {
+                        if (size() <= MAX_ENTRIES_PER_USER) return false;
+                        evictions.increment();
+                        return true;
+                    }
+                });
+    }
+
+}
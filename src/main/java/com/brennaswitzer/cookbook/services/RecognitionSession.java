@@ -0,0 +1,170 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.exceptions.BadRequestException;
+import com.brennaswitzer.cookbook.payload.RecognizedItem;
+import com.brennaswitzer.cookbook.payload.RecognizedItem.Range;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * I am an in-progress item being recognized as it's typed. The client opens
+ * me with the initial raw string, and then sends each edit as an offset, a
+ * number of deleted characters, and the inserted text. I remember the
+ * sections the string was last recognized as, and the ingredient names found
+ * among its other words, and each edit shifts them along, dropping those it
+ * touched. So after an edit, only the sections and words the edit touched
+ * have to be recognized again; the rest are reused where they now are. Names
+ * and units are also remembered by their text, so retyping one doesn't look
+ * it up again.
+ * <p>
+ * My memory is only good as long as the ingredients and units it came from
+ * don't change, so it's tied to a {@link RecognitionCache} generation.
+ */
+public class RecognitionSession {
+
+    private static final int MAX_MEMOS = 64;
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Long userId;
+
+    private String raw;
+
+    private long generation;
+
+    final Map<String, Optional<Long>> ingredientIds = memo();
+
+    final Map<String, Optional<Long>> unitIds = memo();
+
+    final Map<String, List<IngredientIndex.Entry>> suggestions = memo();
+
+    // the explicit sections last recognized, with their resolved values
+    private final List<Range> sections = new ArrayList<>();
+
+    // the unrecognized words last scanned for implicit names, and every name
+    // found among them, or null if there wasn't a scan
+    private List<Range> scannedWords;
+
+    private List<Range> implicitNames;
+
+    RecognitionSession(Long userId, String raw) {
+        this.userId = userId;
+        this.raw = raw;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+
+    /**
+     * I replace {@code deleted} characters of my raw string, starting at
+     * {@code offset}, with the inserted text.
+     */
+    void applyEdit(int offset, int deleted, String inserted) {
+        if (offset < 0 || deleted < 0 || offset + deleted > raw.length()) {
+            throw new BadRequestException(String.format(
+                    "Can't delete %d characters at %d from a %d character string",
+                    deleted,
+                    offset,
+                    raw.length()));
+        }
+        if (inserted == null) inserted = "";
+        raw = raw.substring(0, offset)
+                + inserted
+                + raw.substring(offset + deleted);
+        int delta = inserted.length() - deleted;
+        shiftUntouched(sections, offset, deleted, delta);
+        if (scannedWords != null) {
+            shiftUntouched(scannedWords, offset, deleted, delta);
+            shiftUntouched(implicitNames, offset, deleted, delta);
+        }
+    }
+
+    /**
+     * I return the remembered section spanning exactly the passed range, if
+     * it's one of the passed types. Since no edit has touched it, it still
+     * has the same text, and so the same value.
+     */
+    Range findSection(int start, int end, RecognizedItem.Type... types) {
+        for (Range r : sections) {
+            if (r.getStart() != start || r.getEnd() != end) continue;
+            for (RecognizedItem.Type t : types) {
+                if (t == r.getType()) return r;
+            }
+        }
+        return null;
+    }
+
+    void rememberSections(List<Range> sections) {
+        this.sections.clear();
+        this.sections.addAll(sections);
+    }
+
+    List<Range> getScannedWords() {
+        return scannedWords;
+    }
+
+    List<Range> getImplicitNames() {
+        return implicitNames;
+    }
+
+    void rememberImplicitNames(List<Range> scannedWords, List<Range> implicitNames) {
+        this.scannedWords = new ArrayList<>(scannedWords);
+        this.implicitNames = new ArrayList<>(implicitNames);
+    }
+
+    /**
+     * I forget everything I've resolved if it might be out of date.
+     */
+    void ensureGeneration(long generation) {
+        if (this.generation == generation) return;
+        ingredientIds.clear();
+        unitIds.clear();
+        suggestions.clear();
+        sections.clear();
+        scannedWords = null;
+        implicitNames = null;
+        this.generation = generation;
+    }
+
+    private static void shiftUntouched(List<Range> ranges, int offset, int deleted, int delta) {
+        ListIterator<Range> itr = ranges.listIterator();
+        while (itr.hasNext()) {
+            Range r = itr.next();
+            if (r.getEnd() <= offset) continue;
+            if (r.getStart() >= offset + deleted) {
+                itr.set(new Range(
+                        r.getStart() + delta,
+                        r.getEnd() + delta,
+                        r.getType(),
+                        r.getValue()));
+            } else {
+                itr.remove();
+            }
+        }
+    }
+
+    private static <K, V> Map<K, V> memo() {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_MEMOS;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.exceptions.ResourceNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * I keep track of the open {@link RecognitionSession}s. There is no explicit
+ * expiry: once there are too many, the least recently used are discarded, and
+ * their clients will have to open new ones.
+ */
+@Service
+public class RecognitionSessions {
+
+    static final int MAX_SESSIONS = 10_000;
+
+    private final Map<String, RecognitionSession> sessions = Collections.synchronizedMap(
+            new LinkedHashMap<String, RecognitionSession>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RecognitionSession> eldest) {
+                    return size() > MAX_SESSIONS;
+                }
+            });
+
+    public RecognitionSession open(Long userId, String raw) {
+        RecognitionSession session = new RecognitionSession(userId, raw);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    public RecognitionSession get(Long userId, String id) {
+        RecognitionSession session = sessions.get(id);
+        if (session == null || !session.getUserId().equals(userId)) {
+            throw new ResourceNotFoundException("RecognitionSession", "id", id);
+        }
+        return session;
+    }
+
+    public void close(Long userId, String id) {
+        // make sure it's theirs
+        get(userId, id);
+        sessions.remove(id);
+    }
+
+}
@@ -4,6 +4,7 @@ import com.brennaswitzer.cookbook.domain.AccessLevel;
 import com.brennaswitzer.cookbook.domain.Task;
 import com.brennaswitzer.cookbook.domain.TaskList;
 import com.brennaswitzer.cookbook.domain.User;
+import com.brennaswitzer.cookbook.payload.TaskInfo;
 import com.brennaswitzer.cookbook.repositories.TaskListRepository;
 import com.brennaswitzer.cookbook.repositories.TaskRepository;
 import com.brennaswitzer.cookbook.repositories.UserRepository;
@@ -11,7 +12,13 @@ import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -37,14 +44,23 @@ public class TaskService {
     @Autowired
     private ItemService itemService;
 
+    @Autowired
+    private PlanEventBroadcaster eventBroadcaster;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
     public Iterable<TaskList> getTaskLists(User owner) {
         return getTaskLists(owner.getId());
     }
 
+    @Transactional(readOnly = true)
     public Iterable<TaskList> getTaskLists() {
         return getTaskLists(principalAccess.getId());
     }
 
+    @Transactional(readOnly = true)
     public Iterable<TaskList> getTaskLists(Long userId) {
         User user = userRepo.getById(userId);
         List<TaskList> result = new LinkedList<>();
@@ -57,10 +73,32 @@ public class TaskService {
         return result;
     }
 
+    @Transactional(readOnly = true)
     public Task getTaskById(Long id) {
         return getTaskById(id, AccessLevel.VIEW);
     }
 
+    @Transactional(readOnly = true)
+    public TaskInfo getTaskInfoById(Long id) {
+        getTaskById(id, AccessLevel.VIEW);
+        return taskRepo.findInfoByIdIn(Collections.singletonList(id)).get(0);
+    }
+
+    /**
+     * I return the task's subtasks which aren't in the trash, in order, built
+     * straight from query rows.
+     */
+    @Transactional(readOnly = true)
+    public List<TaskInfo> getSubtaskInfosById(Long id) {
+        TaskInfo parent = getTaskInfoById(id);
+        if (!parent.hasSubtasks()) return new ArrayList<>();
+        List<Long> ids = new ArrayList<>(parent.getSubtaskIds().length);
+        for (long sid : parent.getSubtaskIds()) {
+            ids.add(sid);
+        }
+        return taskRepo.findInfoByIdIn(ids);
+    }
+
     private Task getTaskById(Long id, AccessLevel requiredAccess) {
         Task task = taskRepo.getOne(id);
         task.getTaskList().ensurePermitted(
@@ -70,6 +108,7 @@ public class TaskService {
         return task;
     }
 
+    @Transactional(readOnly = true)
     public TaskList getTaskListById(Long id) {
         return getTaskListById(id, AccessLevel.VIEW);
     }
@@ -87,28 +126,22 @@ public class TaskService {
         return createTaskList(name, user.getId());
     }
 
+    /**
+     * I create a new plan with a copy of every subtask of an existing plan,
+     * in the same order, with the same statuses, ingredients, quantities, and
+     * preparations. The copies are inserted in batches, not as entities, so
+     * big plans copy quickly.
+     */
     public TaskList duplicateTaskList(String name, Long fromId) {
+        TaskList src = getTaskListById(fromId, AccessLevel.VIEW);
         TaskList list = createTaskList(name);
-        TaskList src = listRepo.getOne(fromId);
-        duplicateChildren(src, list);
+        listRepo.flush();
+        taskRepo.copySubtasks(src.getId(), list.getId());
+        // its subtasks were all inserted behind Hibernate's back
+        entityManager.refresh(list);
         return list;
     }
 
-    private void duplicateChildren(Task src, Task dest) {
-        if (!src.hasSubtasks()) return;
-        for (Task s : src.getOrderedSubtasksView()) {
-            Task d = new Task(
-                    s.getName(),
-                    s.getQuantity(),
-                    s.getIngredient(),
-                    s.getPreparation()
-            );
-            d.setStatus(s.getStatus()); // unclear if this is good?
-            dest.addSubtask(d);
-            duplicateChildren(s, d);
-        }
-    }
-
     public TaskList createTaskList(String name) {
         return createTaskList(name, principalAccess.getId());
     }
@@ -180,6 +213,13 @@ public class TaskService {
     public TaskList deleteGrantFromList(Long listId, Long userId) {
         TaskList list = getTaskListById(listId, AccessLevel.ADMINISTER);
         list.getAcl().deleteGrant(userRepo.getById(userId));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // they can't view it anymore
+                eventBroadcaster.unsubscribe(listId, userId);
+            }
+        });
         return list;
     }
 
@@ -0,0 +1,32 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.repositories.PlanChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Transactional
+@Slf4j
+public class TrimPlanChangeLogs {
+
+    @Autowired
+    private PlanChangeRepository planChangeRepository;
+
+    @Scheduled(fixedDelay = 60, initialDelay = 2, timeUnit = TimeUnit.MINUTES)
+    public void trimPlanChangeLogs() {
+        // clients further behind than this reload the whole plan
+        val cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
+        val n = planChangeRepository.deleteByCreatedAtBefore(cutoff);
+        if (n > 0) {
+            log.info("Trimmed {} old plan change(s)", n);
+        }
+    }
+}
@@ -26,6 +26,9 @@ public class UnitLoader {
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private UnitResolver unitResolver;
+
     public static class UomInfo {
         private String name;
         private String pluralName;
@@ -125,6 +128,10 @@ public class UnitLoader {
                 });
             }
         }
+        if (unitResolver != null) {
+            // aliases may have been added to existing units, too
+            unitResolver.onChange();
+        }
         return unitMap.values();
     }
 
@@ -0,0 +1,31 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.UnitOfMeasure;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * I tell the {@link UnitResolver} about {@link UnitOfMeasure} writes. Like
+ * {@link IngredientIndexListener}, I'm created during EntityManagerFactory
+ * bootstrap, so the resolver is looked up lazily.
+ */
+public class UnitOfMeasureListener {
+
+    @Autowired
+    private ObjectProvider<UnitResolver> resolverProvider;
+
+    @PrePersist
+    @PreUpdate
+    @PreRemove
+    public void onChange(UnitOfMeasure uom) {
+        if (resolverProvider == null) return;
+        UnitResolver resolver = resolverProvider.getIfAvailable();
+        if (resolver == null) return;
+        resolver.onChange();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.UnitOfMeasure;
+import com.brennaswitzer.cookbook.util.EnglishUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * I resolve unit names to {@link UnitOfMeasure}s with a map lookup, instead of
+ * the {@code UnitOfMeasure.byName} query {@link UnitOfMeasure#find} uses. The
+ * dictionary of names, plural names, and aliases is built from the unit tables
+ * (which {@link UnitLoader} populates from {@code units.yml}) the first time
+ * it's needed, and rebuilt after any transaction which changes a unit commits.
+ * <p>
+ * Resolution has the same semantics as {@link UnitOfMeasure#find}: the
+ * unpluralized name is looked up as-is, and then lowercased. Names beat plural
+ * names, which beat aliases. While the current transaction has uncommitted
+ * unit changes, I defer to {@link UnitOfMeasure#find} so they're visible.
+ */
+@Service
+public class UnitResolver {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private RecognitionCache recognitionCache;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Map<String, Long> unitIdsByName;
+
+    private final TransactionSynchronization invalidateOnCommit = new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UnitResolver.this);
+            if (status == STATUS_COMMITTED) invalidate();
+        }
+    };
+
+    public Optional<UnitOfMeasure> find(String name) {
+        if (name == null) return Optional.empty();
+        if (hasPendingChanges()) {
+            return UnitOfMeasure.find(entityManager, name);
+        }
+        name = EnglishUtils.unpluralize(name.trim());
+        Map<String, Long> dictionary = getDictionary();
+        Long id = dictionary.get(name);
+        if (id == null) id = dictionary.get(name.toLowerCase());
+        if (id == null) return Optional.empty();
+        return Optional.of(entityManager.getReference(UnitOfMeasure.class, id));
+    }
+
+    public UnitOfMeasure ensure(String name) {
+        if (name == null) throw new NullPointerException();
+        return find(name)
+                .orElseGet(() -> UnitOfMeasure.ensure(entityManager, name));
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        unitIdsByName = null;
+        recognitionCache.invalidateAll();
+    }
+
+    /**
+     * I indicate whether the current transaction has changed any units which
+     * aren't reflected in the dictionary yet.
+     */
+    public boolean hasPendingChanges() {
+        return TransactionSynchronizationManager.getResource(this) != null;
+    }
+
+    void onChange() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate();
+            return;
+        }
+        if (hasPendingChanges()) return;
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(invalidateOnCommit);
+    }
+
+    private Map<String, Long> getDictionary() {
+        Map<String, Long> dictionary = unitIdsByName;
+        if (dictionary != null) return dictionary;
+        long gen = generation.get();
+        dictionary = loadDictionary();
+        // don't keep it if it was invalidated while loading
+        if (generation.get() == gen) unitIdsByName = dictionary;
+        return dictionary;
+    }
+
+    private Map<String, Long> loadDictionary() {
+        Map<String, Long> names = new HashMap<>();
+        Map<String, Long> pluralNames = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(
+                "select id, name, pluralName from UnitOfMeasure order by id",
+                Object[].class).getResultList()) {
+            names.putIfAbsent((String) row[1], (Long) row[0]);
+            if (row[2] != null) pluralNames.putIfAbsent((String) row[2], (Long) row[0]);
+        }
+        Map<String, Long> dictionary = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(
+                "select uom.id, a from UnitOfMeasure uom join uom.aliases a order by uom.id",
+                Object[].class).getResultList()) {
+            dictionary.putIfAbsent((String) row[1], (Long) row[0]);
+        }
+        dictionary.putAll(pluralNames);
+        dictionary.putAll(names);
+        return Collections.unmodifiableMap(dictionary);
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManager;
+
+public final class DialectUtils {
+
+    private DialectUtils() {}
+
+    /**
+     * I indicate whether the passed EntityManager talks to PostgreSQL, so
+     * Postgres-only features (like full-text search) may be used. Tests run
+     * against H2, which doesn't have them.
+     */
+    public static boolean isPostgres(EntityManager entityManager) {
+        return entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQL81Dialect;
+    }
+
+}
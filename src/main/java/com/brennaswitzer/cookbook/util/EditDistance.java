@@ -0,0 +1,105 @@
+package com.brennaswitzer.cookbook.util;
+
+/**
+ * I find approximate occurrences of a short pattern in a longer text, using
+ * Levenshtein distance (insertions, deletions, and substitutions all cost one).
+ */
+public final class EditDistance {
+
+    public static class Match {
+        private final int start;
+        private final int end;
+        private final int distance;
+
+        Match(int start, int end, int distance) {
+            this.start = start;
+            this.end = end;
+            this.distance = distance;
+        }
+
+        /**
+         * The index of the first character of the match in the text.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * The index after the last character of the match in the text.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{" + "start=" + start +
+                    ", end=" + end +
+                    ", distance=" + distance +
+                    '}';
+        }
+    }
+
+    /**
+     * I find the substring of the text which is the fewest edits away from the
+     * pattern, if it's within {@code maxDistance} edits. Ties go to the match
+     * which ends first. Characters are compared exactly, so callers should
+     * lowercase both strings, if they want case-insensitivity.
+     *
+     * @param pattern     The string to look for
+     * @param text        The string to look in
+     * @param maxDistance The most edits a match may need
+     * @return The best match, or null if there isn't one close enough
+     */
+    public static Match bestSubstringMatch(CharSequence pattern, CharSequence text, int maxDistance) {
+        int m = pattern.length();
+        int n = text.length();
+        if (m <= maxDistance) return new Match(0, 0, m);
+        // Sellers' algorithm: a column of distances per text position, where
+        // a match may start anywhere in the text for free. Each cell also
+        // tracks where in the text its alignment started.
+        int[] prev = new int[m + 1];
+        int[] prevStart = new int[m + 1];
+        int[] curr = new int[m + 1];
+        int[] currStart = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            prev[i] = i;
+        }
+        Match best = null;
+        for (int j = 1; j <= n; j++) {
+            char c = text.charAt(j - 1);
+            curr[0] = 0;
+            currStart[0] = j;
+            for (int i = 1; i <= m; i++) {
+                int d = prev[i - 1] + (pattern.charAt(i - 1) == c ? 0 : 1);
+                int s = prevStart[i - 1];
+                if (prev[i] + 1 < d) {
+                    d = prev[i] + 1;
+                    s = prevStart[i];
+                }
+                if (curr[i - 1] + 1 < d) {
+                    d = curr[i - 1] + 1;
+                    s = currStart[i - 1];
+                }
+                curr[i] = d;
+                currStart[i] = s;
+            }
+            if (curr[m] <= maxDistance && (best == null || curr[m] < best.distance)) {
+                best = new Match(currStart[m], j, curr[m]);
+                if (best.distance == 0) break;
+            }
+            int[] t = prev;
+            prev = curr;
+            curr = t;
+            t = prevStart;
+            prevStart = currStart;
+            currStart = t;
+        }
+        return best;
+    }
+
+}
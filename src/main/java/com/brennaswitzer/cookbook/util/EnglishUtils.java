@@ -1,11 +1,12 @@
 package com.brennaswitzer.cookbook.util;
 
-import java.util.regex.Pattern;
+import java.util.*;
 
 public final class EnglishUtils {
 
-    private static final Pattern SPACES = Pattern.compile("  +");
-    private static final Pattern END_PUNCT = Pattern.compile("(^[^a-zA-Z0-9]+)|([^a-zA-Z0-9]+$)");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "as", "at", "by", "for", "from", "in", "into",
+            "is", "it", "of", "on", "or", "the", "to", "with"));
 
     public static String unpluralize(String word) {
         if (word == null) return word;
@@ -24,12 +25,112 @@ public final class EnglishUtils {
         return word;
     }
 
+    /**
+     * I strip leading and trailing non-alphanumerics from the passed string,
+     * and collapse runs of spaces within it to a single space. I make a single
+     * pass over it, and if there's nothing to change, return it as-is.
+     */
     public static String canonicalize(String s) {
         if (s == null) return s;
-        s = SPACES.matcher(s).replaceAll(" ");
-        s = END_PUNCT.matcher(s).replaceAll("");
-        s = s.trim();
-        return s;
+        int len = s.length();
+        int start = 0;
+        while (start < len && !isAlphanumeric(s.charAt(start))) start++;
+        int end = len;
+        while (end > start && !isAlphanumeric(s.charAt(end - 1))) end--;
+        StringBuilder sb = null;
+        for (int i = start + 1; i < end; i++) {
+            if (s.charAt(i) == ' ' && s.charAt(i - 1) == ' ') {
+                if (sb == null) {
+                    sb = new StringBuilder(end - start);
+                    sb.append(s, start, i);
+                }
+            } else if (sb != null) {
+                sb.append(s.charAt(i));
+            }
+        }
+        if (sb != null) return sb.toString();
+        if (start == 0 && end == len) return s;
+        return s.substring(start, end);
+    }
+
+    /**
+     * I break the passed text into lowercase words, drop the common ones (like
+     * "the" or "with"), and {@link #stem} the rest, in order, for full-text
+     * matching. Anything other than letters and digits separates words.
+     */
+    public static List<String> searchTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) return terms;
+        int len = text.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            if (i < len && isAlphanumeric(text.charAt(i))) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                String word = text.substring(start, i).toLowerCase();
+                if (!STOP_WORDS.contains(word)) {
+                    terms.add(stem(word));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * I strip common English suffixes off a lowercase word, so that, say,
+     * "knead", "kneads", and "kneading" all become "knead", and "bake",
+     * "baked", and "baking" all become "bak". Stems aren't always words, and
+     * I'm far cruder than a real stemmer, but the same word always gets the
+     * same stem, and a word's prefix usually stems to a prefix of its stem.
+     */
+    public static String stem(String word) {
+        if (word == null || word.length() <= 3) return word;
+        String w = word;
+        if (w.endsWith("ies") && w.length() > 4) {
+            w = w.substring(0, w.length() - 3) + 'y';
+        } else if (w.endsWith("sses")
+                || w.endsWith("shes")
+                || w.endsWith("ches")
+                || w.endsWith("xes")
+                || w.endsWith("oes")) {
+            w = w.substring(0, w.length() - 2);
+        } else if (w.endsWith("s")
+                && !w.endsWith("ss")
+                && !w.endsWith("us")
+                && !w.endsWith("is")) {
+            w = w.substring(0, w.length() - 1);
+        }
+        if (w.endsWith("ing") && w.length() > 5) {
+            w = undouble(w.substring(0, w.length() - 3));
+        } else if (w.endsWith("ied") && w.length() > 4) {
+            w = w.substring(0, w.length() - 3) + 'y';
+        } else if (w.endsWith("ed") && !w.endsWith("eed") && w.length() > 4) {
+            w = undouble(w.substring(0, w.length() - 2));
+        } else if (w.endsWith("ly") && w.length() > 4) {
+            w = w.substring(0, w.length() - 2);
+        }
+        if (w.endsWith("e") && w.length() > 3) {
+            w = w.substring(0, w.length() - 1);
+        }
+        return w;
+    }
+
+    // "chopp" to "chop", but leave "roll" and "fizz" alone
+    private static String undouble(String w) {
+        int len = w.length();
+        if (len < 3) return w;
+        char c = w.charAt(len - 1);
+        if (c != w.charAt(len - 2)) return w;
+        if (c == 'l' || c == 's' || c == 'z') return w;
+        if ("aeiou".indexOf(c) >= 0) return w;
+        return w.substring(0, len - 1);
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9');
     }
 
 }
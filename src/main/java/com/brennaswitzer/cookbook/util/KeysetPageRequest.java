@@ -0,0 +1,111 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * I am a {@link Pageable} which seeks past the last row of the previous page,
+ * instead of skipping some number of rows, so a deep page costs no more than
+ * the first. Where to seek is an opaque token, made by the repository that
+ * returned the previous page; it's {@code null} for the first page. Since
+ * there are no page numbers, I'm always page zero.
+ * <p>
+ * A repository returns its slice with a request that knows the token for the
+ * slice's last row, so that {@link org.springframework.data.domain.Slice#nextPageable()}
+ * continues after it.
+ */
+public class KeysetPageRequest implements Pageable {
+
+    private final int size;
+
+    private final String after;
+
+    private final String next;
+
+    public static KeysetPageRequest of(int size, String after) {
+        return new KeysetPageRequest(size, after, null);
+    }
+
+    private KeysetPageRequest(int size, String after, String next) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.size = size;
+        this.after = after;
+        this.next = next;
+    }
+
+    /**
+     * The token to seek past, or {@code null} to start at the beginning.
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * I return a copy of this request which will continue after the passed
+     * token, for returning alongside the page it's from.
+     */
+    public KeysetPageRequest withNext(String next) {
+        return new KeysetPageRequest(size, after, next);
+    }
+
+    @Override
+    public int getPageNumber() {
+        return 0;
+    }
+
+    @Override
+    public int getPageSize() {
+        return size;
+    }
+
+    /**
+     * I never skip any rows; I seek past {@link #getAfter()} instead.
+     */
+    @Override
+    public long getOffset() {
+        return 0;
+    }
+
+    @Override
+    public Sort getSort() {
+        return Sort.unsorted();
+    }
+
+    @Override
+    public Pageable next() {
+        if (next == null) {
+            throw new IllegalStateException("There's no known next page");
+        }
+        return new KeysetPageRequest(size, next, null);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        // there's no going back; only the client knows the earlier tokens
+        return first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new KeysetPageRequest(size, null, null);
+    }
+
+    /**
+     * Keyset pages have no numbers, so any page but the first is an ordinary
+     * {@link PageRequest}, which skips the earlier pages' rows.
+     */
+    @Override
+    public Pageable withPage(int pageNumber) {
+        if (pageNumber == 0) return first();
+        return PageRequest.of(pageNumber, size);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return after != null;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.brennaswitzer.cookbook.util;
+
+public final class LikeUtils {
+
+    private LikeUtils() {}
+
+    /**
+     * I escape the LIKE wildcards in the passed string, so it matches only
+     * itself. The query must say {@code escape '\'} for it to work.
+     */
+    public static String escape(String value) {
+        if (value == null) return null;
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * I return a LIKE pattern matching anything which contains the passed
+     * string, which is escaped as by {@link #escape}.
+     */
+    public static String containing(String value) {
+        if (value == null) return null;
+        return '%' + escape(value) + '%';
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.brennaswitzer.cookbook.util;
+
+import java.util.*;
+
+/**
+ * I am an in-memory, case-insensitive substring index over short strings (like
+ * ingredient names), keyed by a {@code long} id. Every one-, two-, and
+ * three-character gram of each string is posted, so searching for a term of up
+ * to three characters is a single map lookup, and a longer term only has to
+ * verify the candidates posted under its rarest trigram. Results are returned
+ * in id order, to line up with the {@code ...OrderById} repository methods.
+ * <p>
+ * I am not thread safe; callers must synchronize externally.
+ *
+ * @param <T> The type of value associated with each indexed string
+ */
+public class NGramIndex<T> {
+
+    private static final int MAX_GRAM = 3;
+
+    private static class Entry<T> {
+        private final String text;
+        private final T value;
+
+        private Entry(String text, T value) {
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    public static class Hit<T> {
+        private final T value;
+        private final int distance;
+
+        Hit(T value, int distance) {
+            this.value = value;
+            this.distance = distance;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * The number of edits between the term and the closest substring.
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private final NavigableMap<Long, Entry<T>> entries = new TreeMap<>();
+
+    private final Map<String, NavigableSet<Long>> postings = new HashMap<>();
+
+    public void put(long id, String text, T value) {
+        remove(id);
+        if (text == null) return;
+        String lc = text.toLowerCase();
+        entries.put(id, new Entry<>(lc, value));
+        for (String g : grams(lc)) {
+            postings.computeIfAbsent(g, k -> new TreeSet<>())
+                    .add(id);
+        }
+    }
+
+    public boolean remove(long id) {
+        Entry<T> e = entries.remove(id);
+        if (e == null) return false;
+        for (String g : grams(e.text)) {
+            NavigableSet<Long> ids = postings.get(g);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) postings.remove(g);
+        }
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * I return the values of all indexed strings, in id order.
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<>(entries.size());
+        for (Entry<T> e : entries.values()) {
+            values.add(e.value);
+        }
+        return values;
+    }
+
+    /**
+     * I find the values of all strings which contain the passed term, ignoring
+     * case, ordered by id.
+     *
+     * @param term  The substring to search for
+     * @param limit The maximum number of values to return
+     * @return The values of the matching strings, in id order
+     */
+    public List<T> search(String term, int limit) {
+        if (term == null || limit <= 0) return Collections.emptyList();
+        String lc = term.toLowerCase();
+        Collection<Long> candidates;
+        boolean verify = false;
+        if (lc.isEmpty()) {
+            candidates = entries.keySet();
+        } else if (lc.length() <= MAX_GRAM) {
+            candidates = postings.get(lc);
+        } else {
+            candidates = null;
+            for (int i = 0, l = lc.length() - MAX_GRAM; i <= l; i++) {
+                NavigableSet<Long> ids = postings.get(lc.substring(i, i + MAX_GRAM));
+                if (ids == null) return Collections.emptyList();
+                if (candidates == null || ids.size() < candidates.size()) {
+                    candidates = ids;
+                }
+            }
+            verify = true;
+        }
+        if (candidates == null) return Collections.emptyList();
+        List<T> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Long id : candidates) {
+            Entry<T> e = entries.get(id);
+            if (verify && !e.text.contains(lc)) continue;
+            result.add(e.value);
+            if (result.size() >= limit) break;
+        }
+        return result;
+    }
+
+    /**
+     * I find the values of all strings which contain a substring within
+     * {@code maxDistance} edits of the passed term, ignoring case, ordered by
+     * distance and then id. Candidates are those sharing enough trigrams with
+     * the term to possibly be close enough (per the q-gram lemma), which are
+     * then checked with {@link EditDistance}. If the deadline passes, I return
+     * what I've found so far.
+     *
+     * @param term        The substring to approximately search for
+     * @param maxDistance The most edits a match may need
+     * @param limit       The maximum number of hits to return
+     * @param deadline    The {@link System#nanoTime()} to give up at
+     * @return The matching values, and their distances, closest first
+     */
+    public List<Hit<T>> searchSimilar(String term, int maxDistance, int limit, long deadline) {
+        if (term == null || limit <= 0) return Collections.emptyList();
+        String lc = term.toLowerCase();
+        if (lc.length() <= maxDistance) return Collections.emptyList();
+        // each edit can destroy at most MAX_GRAM of the term's trigrams
+        int threshold = (lc.length() - MAX_GRAM + 1) - MAX_GRAM * maxDistance;
+        Collection<Long> candidates;
+        if (threshold <= 0) {
+            candidates = entries.keySet();
+        } else {
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0, l = lc.length() - MAX_GRAM; i <= l; i++) {
+                NavigableSet<Long> ids = postings.get(lc.substring(i, i + MAX_GRAM));
+                if (ids == null) continue;
+                for (Long id : ids) {
+                    counts.merge(id, 1, Integer::sum);
+                }
+            }
+            NavigableSet<Long> close = new TreeSet<>();
+            counts.forEach((id, c) -> {
+                if (c >= threshold) close.add(id);
+            });
+            candidates = close;
+        }
+        List<Hit<T>> hits = new ArrayList<>();
+        int checked = 0;
+        for (Long id : candidates) {
+            if ((++checked & 0x3f) == 0 && System.nanoTime() - deadline > 0) break;
+            Entry<T> e = entries.get(id);
+            EditDistance.Match m = EditDistance.bestSubstringMatch(lc, e.text, maxDistance);
+            if (m != null) hits.add(new Hit<>(e.value, m.getDistance()));
+        }
+        // stable, so equally-distant hits stay in id order
+        hits.sort(Comparator.comparingInt(Hit::getDistance));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private static Set<String> grams(String s) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0, l = s.length(); i < l; i++) {
+            for (int n = 1; n <= MAX_GRAM && i + n <= l; n++) {
+                grams.add(s.substring(i, i + n));
+            }
+        }
+        return grams;
+    }
+
+}
@@ -1,23 +1,9 @@
 package com.brennaswitzer.cookbook.util;
 
-import com.brennaswitzer.cookbook.antlr.NumberBaseVisitor;
-import com.brennaswitzer.cookbook.antlr.NumberLexer;
-import com.brennaswitzer.cookbook.antlr.NumberParser;
-import com.brennaswitzer.cookbook.util.antlr.FastFailErrorListener;
-import org.antlr.v4.runtime.BailErrorStrategy;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.ParserRuleContext;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
 import java.text.NumberFormat;
-import java.util.function.BiFunction;
 
 public final class NumberUtils {
 
-    private static final Log logger = LogFactory.getLog(NumberUtils.class);
-
     public static class NumberWithRange {
         private final double number;
         private final int start;
@@ -50,82 +36,291 @@ public final class NumberUtils {
         }
     }
 
-    private static class NumVis extends NumberBaseVisitor<NumberWithRange> {
+    /**
+     * I am a hand-written scanner for the language described by
+     * {@code Number.g4}, which lexes and parses in a single pass without
+     * building tokens or a parse tree. The grammar is the reference: anything
+     * it accepts, I accept with the same value and range, and anything it
+     * rejects, I reject. Like the grammar, I stop at the first thing which
+     * isn't part of the number, so trailing garbage is allowed.
+     */
+    private static final class Scanner {
 
-        @Override
-        public NumberWithRange visitStart(NumberParser.StartContext ctx) {
-            NumberWithRange nwr = super.visitStart(ctx);
-            if (ctx.d == null) {
-                return nwr;
-            }
-            return aggregateResult(
-                    val(-1, ctx),
-                    nwr,
-                    (a, b) -> a * b
-            );
+        private static final int EOF = 0;
+        private static final int INTEGER = 1;
+        private static final int DECIMAL = 2;
+        private static final int NAME = 3;
+        private static final int VULGAR_FRACTION = 4;
+        private static final int AND = 5;
+        private static final int DASH = 6;
+        private static final int SLASH = 7;
+        private static final int OTHER = 8;
+
+        private static final String[] NAMES = {
+                "a half", "one half", "half",
+                "one", "two", "three", "four", "five",
+                "six", "seven", "eight", "nine", "ten",
+                "eleven", "twelve", "thirteen", "fourteen", "fifteen",
+                "sixteen", "seventeen", "eighteen", "nineteen", "twenty",
+        };
+
+        private static final double[] NAME_VALUES = {
+                0.5, 0.5, 0.5,
+                1, 2, 3, 4, 5,
+                6, 7, 8, 9, 10,
+                11, 12, 13, 14, 15,
+                16, 17, 18, 19, 20,
+        };
+
+        // exactly representable, so dividing by them rounds correctly
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+                1e21, 1e22,
+        };
+
+        private final String str;
+        private final int len;
+
+        // the token most recently lexed
+        private int start;
+        private int end;
+        private double value;
+
+        // the atom most recently parsed
+        private double number;
+        private int pos;
+
+        private Scanner(String str) {
+            this.str = str;
+            this.len = str.length();
         }
 
-        @Override
-        public NumberWithRange visitFraction(NumberParser.FractionContext ctx) {
-            if (ctx.vf != null) {
-                return visitVulgarFraction(ctx.vf);
-            }
-            return aggregateResult(
-                    visitInteger(ctx.n),
-                    visitInteger(ctx.d),
-                    (n, d) -> n / d
+        NumberWithRange scan() {
+            boolean negative = lex(0) == DASH;
+            int rangeStart = start;
+            if (!atom(negative ? end : 0)) return null;
+            double sum = number;
+            while (lex(pos) == AND) {
+                if (!atom(end)) return null;
+                sum += number;
+            }
+            if (negative) sum = -1 * sum;
+            return new NumberWithRange(
+                    Math.round(sum * 1000) / 1000.0,
+                    rangeStart,
+                    pos
             );
         }
 
-        @Override
-        public NumberWithRange visitNumber(NumberParser.NumberContext ctx) {
-            if (ctx.f != null) {
-                return aggregateResult(visitInteger(ctx.i), visitFraction(ctx.f));
+        private boolean atom(int from) {
+            switch (lex(from)) {
+                case INTEGER:
+                    double integer = value;
+                    int afterInteger = end;
+                    if (lex(afterInteger) == SLASH) {
+                        return fraction(from);
+                    }
+                    return number(integer, afterInteger);
+                case DECIMAL:
+                case NAME:
+                case VULGAR_FRACTION:
+                    number = value;
+                    pos = end;
+                    return true;
+                default:
+                    return false;
             }
-            return super.visitNumber(ctx);
         }
 
-        @Override
-        public NumberWithRange visitDecimal(NumberParser.DecimalContext ctx) {
-            return val(Double.parseDouble(ctx.getText()), ctx);
+        private boolean number(double integer, int from) {
+            number = integer;
+            pos = from;
+            int next = lex(from);
+            if (next == AND) {
+                // only an "and" followed by a fraction belongs to the number;
+                // any other "and" is left for the next atom.
+                int afterAnd = end;
+                int t = lex(afterAnd);
+                if (t != VULGAR_FRACTION && (t != INTEGER || lex(end) != SLASH)) {
+                    return true;
+                }
+                from = afterAnd;
+                next = t;
+            }
+            if (next != INTEGER && next != VULGAR_FRACTION) return true;
+            if (!fraction(from)) return false;
+            number = integer + number;
+            return true;
         }
 
-        @Override
-        public NumberWithRange visitInteger(NumberParser.IntegerContext ctx) {
-            return val(Double.parseDouble(ctx.getText()), ctx);
+        private boolean fraction(int from) {
+            switch (lex(from)) {
+                case VULGAR_FRACTION:
+                    number = value;
+                    pos = end;
+                    return true;
+                case INTEGER:
+                    double numerator = value;
+                    if (lex(end) != SLASH) return false;
+                    if (lex(end) != INTEGER) return false;
+                    number = numerator / value;
+                    pos = end;
+                    return true;
+                default:
+                    return false;
+            }
         }
 
-        @Override
-        public NumberWithRange visitVulgarFraction(NumberParser.VulgarFractionContext ctx) {
-            return val(ctx.val, ctx);
+        /**
+         * I lex the first token at or after the passed index, setting its
+         * range (and value, if it has one), and returning its type.
+         */
+        private int lex(int from) {
+            int i = from;
+            while (i < len && isWhitespace(str.charAt(i))) i++;
+            start = i;
+            end = i + 1;
+            if (i >= len) {
+                end = i;
+                return EOF;
+            }
+            char c = Character.toLowerCase(str.charAt(i));
+            if (c >= '1' && c <= '9') {
+                int j = i + 1;
+                while (j < len && isDigit(str.charAt(j))) j++;
+                if (j + 1 < len && str.charAt(j) == '.' && isDigit(str.charAt(j + 1))) {
+                    return decimal(i, j + 2);
+                }
+                end = j;
+                value = toDouble(i, j);
+                return INTEGER;
+            }
+            if (c == '0' && i + 2 < len && str.charAt(i + 1) == '.' && isDigit(str.charAt(i + 2))) {
+                return decimal(i, i + 3);
+            }
+            if (c == '.' && i + 1 < len && isDigit(str.charAt(i + 1))) {
+                return decimal(i, i + 2);
+            }
+            switch (c) {
+                case '&':
+                    return AND;
+                case '-':
+                    return DASH;
+                case '/': // normal slash (solidus)
+                case '⁄': // U+2044 : FRACTION SLASH
+                    return SLASH;
+            }
+            double vf = vulgarFraction(c);
+            if (vf > 0) {
+                value = vf;
+                return VULGAR_FRACTION;
+            }
+            if (c < 'a' || c > 'z') return OTHER;
+            if (matches(i, "and")) {
+                end = i + 3;
+                return AND;
+            }
+            int best = -1;
+            for (int n = 0; n < NAMES.length; n++) {
+                if ((best < 0 || NAMES[n].length() > NAMES[best].length()) && matches(i, NAMES[n])) {
+                    best = n;
+                }
+            }
+            if (best < 0) return OTHER;
+            end = i + NAMES[best].length();
+            value = NAME_VALUES[best];
+            return NAME;
         }
 
-        @Override
-        public NumberWithRange visitName(NumberParser.NameContext ctx) {
-            return val(ctx.val, ctx);
+        private int decimal(int from, int digitsFrom) {
+            int j = digitsFrom;
+            while (j < len && isDigit(str.charAt(j))) j++;
+            end = j;
+            value = toDouble(from, j);
+            return DECIMAL;
         }
 
-        @Override
-        protected NumberWithRange aggregateResult(NumberWithRange aggregate, NumberWithRange nextResult) {
-            return aggregateResult(aggregate, nextResult, Double::sum);
+        private boolean matches(int from, String literal) {
+            int l = literal.length();
+            if (from + l > len) return false;
+            for (int k = 0; k < l; k++) {
+                if (Character.toLowerCase(str.charAt(from + k)) != literal.charAt(k)) return false;
+            }
+            return true;
         }
 
-        private NumberWithRange aggregateResult(NumberWithRange aggregate, NumberWithRange nextResult, BiFunction<Double, Double, Double> combiner) {
-            if (aggregate == null) return nextResult;
-            if (nextResult == null) return aggregate;
-            return new NumberWithRange(
-                    combiner.apply(aggregate.number, nextResult.number),
-                    Math.min(aggregate.start, nextResult.start),
-                    Math.max(aggregate.end, nextResult.end)
-            );
+        private double toDouble(int from, int to) {
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+            for (int k = from; k < to; k++) {
+                char c = str.charAt(k);
+                if (c == '.') {
+                    scale = 0;
+                    continue;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) scale++;
+            }
+            if (scale < 0) scale = 0;
+            // with few enough digits, both operands are exact
+            if (digits <= 15 && scale < POWERS_OF_TEN.length) {
+                return mantissa / POWERS_OF_TEN[scale];
+            }
+            return Double.parseDouble(str.substring(from, to));
         }
 
-        private NumberWithRange val(double val, ParserRuleContext ctx) {
-            return new NumberWithRange(
-                    val,
-                    ctx.start.getStartIndex(),
-                    ctx.stop.getStopIndex() + 1
-            );
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
+
+        private static double vulgarFraction(char c) {
+            switch (c) {
+                case '¼':
+                    return 1.0 / 4.0;
+                case '½':
+                    return 1.0 / 2.0;
+                case '¾':
+                    return 3.0 / 4.0;
+                case '⅐':
+                    return 1.0 / 7.0;
+                case '⅑':
+                    return 1.0 / 9.0;
+                case '⅒':
+                    return 1.0 / 10.0;
+                case '⅓':
+                    return 1.0 / 3.0;
+                case '⅔':
+                    return 2.0 / 3.0;
+                case '⅕':
+                    return 1.0 / 5.0;
+                case '⅖':
+                    return 2.0 / 5.0;
+                case '⅗':
+                    return 3.0 / 5.0;
+                case '⅘':
+                    return 4.0 / 5.0;
+                case '⅙':
+                    return 1.0 / 6.0;
+                case '⅚':
+                    return 5.0 / 6.0;
+                case '⅛':
+                    return 1.0 / 8.0;
+                case '⅜':
+                    return 3.0 / 8.0;
+                case '⅝':
+                    return 5.0 / 8.0;
+                case '⅞':
+                    return 7.0 / 8.0;
+                default:
+                    return 0;
+            }
         }
 
     }
@@ -133,22 +328,7 @@ public final class NumberUtils {
     public static NumberWithRange parseNumberWithRange(String str) {
         if (str == null) return null;
         if (str.trim().isEmpty()) return null;
-        try {
-            NumberLexer lexer = new NumberLexer(CharStreams.fromString(str.toLowerCase()));
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            NumberParser parser = new NumberParser(tokens);
-            parser.setErrorHandler(new BailErrorStrategy());
-            parser.addErrorListener(new FastFailErrorListener());
-            NumberWithRange result = new NumVis().visitStart(parser.start());
-            return new NumberWithRange(
-                    Math.round(result.number * 1000) / 1000.0,
-                    result.start,
-                    result.end
-            );
-        } catch (Exception e) {
-            logger.info("Failed to parseNumber(\"" + str + "\")");
-            return null;
-        }
+        return new Scanner(str).scan();
     }
 
     public static Double parseNumber(String str) {
@@ -0,0 +1,173 @@
+package com.brennaswitzer.cookbook.util;
+
+import java.util.*;
+
+/**
+ * I am an Aho-Corasick automaton over words, rather than characters, for
+ * finding every occurrence of a set of multi-word phrases (e.g., ingredient
+ * names) in a sequence of words, in a single pass. Phrases and words are
+ * both lowercased and {@link EnglishUtils#canonicalize canonicalized} before
+ * they're compared, and the last word of a phrase is compared in its
+ * {@link EnglishUtils#unpluralize unpluralized} form, so "Chicken Thighs"
+ * matches the "chicken thigh" phrase, and "tomato" the "Tomatoes" one.
+ * <p>
+ * Add all the phrases, then {@link #build()} me. Once built, I am immutable and
+ * safe to share between threads.
+ *
+ * @param <T> The type of value associated with each phrase
+ */
+public class PhraseMatcher<T> {
+
+    public static class Match<T> {
+        private final int start;
+        private final int end;
+        private final T value;
+
+        Match(int start, int end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        /**
+         * The index of the first word of the match.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * The index after the last word of the match.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{" + "start=" + start +
+                    ", end=" + end +
+                    ", value=" + value +
+                    '}';
+        }
+    }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final int depth;
+        private Node<T> fail;
+        private T value;
+
+        private Node(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    private final Node<T> root = new Node<>(0);
+
+    private boolean built;
+
+    private int maxLength;
+
+    /**
+     * I add a phrase to be matched. If the same phrase is added more than
+     * once, the first value wins.
+     */
+    public PhraseMatcher<T> add(String phrase, T value) {
+        if (built) throw new IllegalStateException("Can't add phrases to a built matcher");
+        if (phrase == null || value == null) return this;
+        List<String> words = new ArrayList<>();
+        for (String w : phrase.trim().split("\\s+")) {
+            w = canonicalize(w);
+            if (!w.isEmpty()) words.add(w);
+        }
+        if (words.isEmpty()) return this;
+        int last = words.size() - 1;
+        words.set(last, EnglishUtils.unpluralize(words.get(last)));
+        Node<T> n = root;
+        for (String w : words) {
+            final int depth = n.depth + 1;
+            n = n.children.computeIfAbsent(w, k -> new Node<>(depth));
+        }
+        if (n.value == null) n.value = value;
+        maxLength = Math.max(maxLength, n.depth);
+        return this;
+    }
+
+    /**
+     * I return the number of words in my longest phrase, so no match can be
+     * longer.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * I compute the failure links, after which no more phrases may be added.
+     */
+    public PhraseMatcher<T> build() {
+        if (built) return this;
+        Queue<Node<T>> queue = new ArrayDeque<>();
+        for (Node<T> c : root.children.values()) {
+            c.fail = root;
+            queue.add(c);
+        }
+        while (!queue.isEmpty()) {
+            Node<T> n = queue.remove();
+            for (Map.Entry<String, Node<T>> e : n.children.entrySet()) {
+                Node<T> c = e.getValue();
+                Node<T> f = n.fail;
+                while (f != root && !f.children.containsKey(e.getKey())) {
+                    f = f.fail;
+                }
+                Node<T> target = f.children.get(e.getKey());
+                c.fail = target == null || target == c ? root : target;
+                queue.add(c);
+            }
+        }
+        built = true;
+        return this;
+    }
+
+    /**
+     * I find every occurrence of every phrase in the passed words, ordered by
+     * the index of their last word, and then longest first.
+     *
+     * @param words The words to search
+     * @return All phrase occurrences
+     */
+    public List<Match<T>> findAll(List<String> words) {
+        if (!built) throw new IllegalStateException("Can't match with an unbuilt matcher");
+        List<Match<T>> matches = new ArrayList<>();
+        Node<T> state = root;
+        for (int i = 0, l = words.size(); i < l; i++) {
+            String w = canonicalize(words.get(i));
+            String singular = EnglishUtils.unpluralize(w);
+            // every suffix of the words so far which is a phrase prefix is on
+            // the failure chain, so check if any of them end here.
+            for (Node<T> n = state; n != null; n = n.fail) {
+                Node<T> c = n.children.get(w);
+                if ((c == null || c.value == null) && !singular.equals(w)) {
+                    c = n.children.get(singular);
+                }
+                if (c != null && c.value != null) {
+                    matches.add(new Match<>(i + 1 - c.depth, i + 1, c.value));
+                }
+            }
+            while (state != root && !state.children.containsKey(w)) {
+                state = state.fail;
+            }
+            state = state.children.getOrDefault(w, root);
+        }
+        return matches;
+    }
+
+    private static String canonicalize(String word) {
+        return EnglishUtils.canonicalize(word.toLowerCase());
+    }
+
+}
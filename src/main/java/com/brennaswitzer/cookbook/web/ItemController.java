@@ -1,24 +1,84 @@
 package com.brennaswitzer.cookbook.web;
 
+import com.brennaswitzer.cookbook.exceptions.BadRequestException;
+import com.brennaswitzer.cookbook.payload.ItemEdit;
 import com.brennaswitzer.cookbook.payload.ItemToRecognize;
+import com.brennaswitzer.cookbook.payload.RecognitionSessionInfo;
 import com.brennaswitzer.cookbook.payload.RecognizedItem;
 import com.brennaswitzer.cookbook.services.ItemService;
+import com.brennaswitzer.cookbook.services.RecognitionCache;
+import com.brennaswitzer.cookbook.services.RecognitionSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("api/item")
 public class ItemController {
 
+    // a batch is recognized in a single transaction
+    private static final int MAX_BATCH_SIZE = 500;
+
     @Autowired
     private ItemService service;
 
+    @Autowired
+    private RecognitionCache recognitionCache;
+
     @PostMapping("/recognize")
     public RecognizedItem recognizeItem(@RequestBody ItemToRecognize item) {
         return service.recognizeItem(item.getRaw(), item.getCursor());
     }
 
+    @PostMapping("/recognize-batch")
+    public List<RecognizedItem> recognizeItems(@RequestBody List<String> raws) {
+        if (raws.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException(String.format(
+                    "Can't recognize more than %d items at once",
+                    MAX_BATCH_SIZE));
+        }
+        return service.recognizeItems(raws);
+    }
+
+    @PostMapping("/recognize/session")
+    public RecognitionSessionInfo openRecognitionSession(@RequestBody ItemToRecognize item) {
+        RecognitionSession session = service.openRecognitionSession(item.getRaw());
+        RecognitionSessionInfo info = new RecognitionSessionInfo();
+        info.setId(session.getId());
+        info.setItem(service.recognizeRecognitionSession(session, item.getCursor()));
+        return info;
+    }
+
+    @PostMapping("/recognize/session/{id}")
+    public RecognizedItem editRecognitionSession(
+            @PathVariable("id") String id,
+            @RequestBody ItemEdit edit
+    ) {
+        return service.editRecognitionSession(
+                id,
+                edit.getOffset(),
+                edit.getDeleted(),
+                edit.getInserted(),
+                edit.getCursor());
+    }
+
+    @DeleteMapping("/recognize/session/{id}")
+    public void closeRecognitionSession(@PathVariable("id") String id) {
+        service.closeRecognitionSession(id);
+    }
+
+    @GetMapping("/recognize/stats")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public RecognitionCache.Stats getRecognitionStats() {
+        return recognitionCache.getStats();
+    }
+
 }
@@ -1,14 +1,22 @@
 package com.brennaswitzer.cookbook.web;
 
 import com.brennaswitzer.cookbook.message.*;
+import com.brennaswitzer.cookbook.payload.PlanChanges;
 import com.brennaswitzer.cookbook.payload.TaskInfo;
+import com.brennaswitzer.cookbook.payload.TaskInfoStream;
+import com.brennaswitzer.cookbook.services.PlanCommandExecutor;
+import com.brennaswitzer.cookbook.services.PlanEventBroadcaster;
 import com.brennaswitzer.cookbook.services.PlanService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.function.Supplier;
 
 @SuppressWarnings("SpringJavaAutowiredFieldsWarningInspection")
 @RestController
@@ -16,24 +24,49 @@ import java.util.List;
 @PreAuthorize("hasRole('USER')")
 public class PlanController {
 
+    public static final String CHANGE_SEQ_HEADER = "X-Plan-Change-Seq";
+
     @Autowired
     private PlanService planService;
 
+    @Autowired
+    private PlanEventBroadcaster eventBroadcaster;
+
+    @Autowired
+    private PlanCommandExecutor commandExecutor;
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getEvents(
+            @PathVariable("id") Long id
+    ) {
+        return planService.subscribeToEvents(id);
+    }
+
     @GetMapping("/{id}/descendants")
-    public List<TaskInfo> getDescendants(
+    public ResponseEntity<TaskInfoStream> getDescendants(
             @PathVariable("id") Long id
     ) {
-        return TaskInfo.fromTasks(planService
-                .getTreeById(id));
+        // before loading, so changes made meanwhile are re-sent, not missed
+        long seq = planService.getChangeSeq(id);
+        return ResponseEntity.ok()
+                .header(CHANGE_SEQ_HEADER, Long.toString(seq))
+                .body(planService.streamTreeInfoById(id));
     }
 
-    @GetMapping("/{id}/all-since")
+    @GetMapping(value = "/{id}/all-since", params = "seq")
+    public PlanChanges getChangesSince(
+            @PathVariable("id") Long id,
+            @RequestParam long seq
+    ) {
+        return planService.getChangesSince(id, seq);
+    }
+
+    @GetMapping(value = "/{id}/all-since", params = "cutoff")
     public List<TaskInfo> getUpdatedSince(
             @PathVariable("id") Long id,
             @RequestParam Long cutoff
     ) {
-        return TaskInfo.fromTasks(planService
-                .getTreeDeltasById(id, Instant.ofEpochMilli(cutoff)));
+        return planService.getTreeDeltasById(id, Instant.ofEpochMilli(cutoff));
     }
 
     @PostMapping("/{id}/mutate-tree")
@@ -41,14 +74,16 @@ public class PlanController {
             @PathVariable("id") Long id,
             @RequestBody MutatePlanTree action
     ) {
-        return planService.mutateTree(action.getIds(), action.getParentId(), action.getAfterId());
+        return apply(id, () ->
+                planService.mutateTree(action.getIds(), action.getParentId(), action.getAfterId()));
     }
 
     @PostMapping("/{id}/reorder-subitems")
     public PlanMessage reorderSubitems(
             @PathVariable("id") Long id,
             @RequestBody ReorderSubitems action) {
-        return planService.resetSubitems(action.getId(), action.getSubitemIds());
+        return apply(id, () ->
+                planService.resetSubitems(action.getId(), action.getSubitemIds()));
     }
 
     @PostMapping("/{id}")
@@ -56,7 +91,8 @@ public class PlanController {
             @PathVariable("id") Long id,
             @RequestBody CreatePlanTreeItem action
     ) {
-        return planService.createItem(action.getId(), action.getParentId(), action.getAfterId(), action.getName());
+        return apply(id, () ->
+                planService.createItem(action.getId(), action.getParentId(), action.getAfterId(), action.getName()));
     }
 
     @PutMapping("/{id}/rename")
@@ -64,14 +100,16 @@ public class PlanController {
             @PathVariable("id") Long id,
             @RequestBody RenamePlanTreeItem action
     ) {
-        return planService.renameItem(action.getId(), action.getName());
+        return apply(id, () ->
+                planService.renameItem(action.getId(), action.getName()));
     }
 
     @PostMapping("/{id}/assign-bucket")
     public PlanMessage assignItemBucket(
             @PathVariable("id") Long id,
             @RequestBody AssignPlanTreeItemBucket action) {
-        return planService.assignItemBucket(action.getId(), action.getBucketId());
+        return apply(id, () ->
+                planService.assignItemBucket(action.getId(), action.getBucketId()));
     }
 
     @PutMapping("/{id}/status")
@@ -79,21 +117,35 @@ public class PlanController {
             @PathVariable("id") Long id,
             @RequestBody SetPlanTreeItemStatus action
     ) {
-        return planService.setItemStatus(action.getId(), action.getStatus());
+        return apply(id, () ->
+                planService.setItemStatus(action.getId(), action.getStatus()));
+    }
+
+    @PostMapping("/{id}/batch")
+    public List<PlanMessage> applyBatch(
+            @PathVariable("id") Long id,
+            @RequestBody PlanBatch batch
+    ) {
+        List<PlanMessage> messages = commandExecutor.execute(id, () ->
+                planService.applyBatch(id, batch.getActions()));
+        messages.forEach(m -> publish(id, m));
+        return messages;
     }
 
     @DeleteMapping("/{planId}/{id}")
     public void deleteItem(
             @PathVariable("planId") Long planId,
             @PathVariable("id") Long id) {
-        planService.deleteItem(id);
+        apply(planId, () ->
+                planService.deleteItem(id));
     }
 
     @PostMapping("/{id}/buckets")
     public PlanMessage createBucket(
             @PathVariable("id") long planId,
             @RequestBody CreatePlanBucket action) {
-        return planService.createBucket(planId, action.getId(), action.getName(), action.getDate());
+        return apply(planId, () ->
+                planService.createBucket(planId, action.getId(), action.getName(), action.getDate()));
     }
 
     @PutMapping("/{planId}/buckets/{id}")
@@ -101,14 +153,31 @@ public class PlanController {
             @PathVariable("planId") long planId,
             @PathVariable("id") long id,
             @RequestBody UpdatePlanBucket action) {
-        return planService.updateBucket(planId, action.getId(), action.getName(), action.getDate());
+        return apply(planId, () ->
+                planService.updateBucket(planId, action.getId(), action.getName(), action.getDate()));
     }
 
     @DeleteMapping("/{planId}/buckets/{id}")
     public PlanMessage deleteBucket(
             @PathVariable("planId") long planId,
             @PathVariable("id") long id) {
-        return planService.deleteBucket(planId, id);
+        return apply(planId, () ->
+                planService.deleteBucket(planId, id));
+    }
+
+    /**
+     * I run the command on the plan's writer, confined to the plan, and then
+     * publish its message to the plan's viewers.
+     */
+    private PlanMessage apply(Long planId, Supplier<PlanMessage> command) {
+        return publish(planId, commandExecutor.execute(planId, () ->
+                planService.applyToPlan(planId, command)));
+    }
+
+    // the command's transaction has committed by the time I'm called
+    private PlanMessage publish(Long planId, PlanMessage message) {
+        eventBroadcaster.publish(planId, message);
+        return message;
     }
 
 }
@@ -11,12 +11,15 @@ import com.brennaswitzer.cookbook.services.ItemService;
 import com.brennaswitzer.cookbook.services.LabelService;
 import com.brennaswitzer.cookbook.services.RecipeService;
 import com.brennaswitzer.cookbook.services.StorageService;
+import com.brennaswitzer.cookbook.util.KeysetPageRequest;
 import com.brennaswitzer.cookbook.util.ShareHelper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -56,14 +59,34 @@ public class RecipeController {
     private IngredientMapper ingredientMapper;
 
     @GetMapping("/")
-    public Page<IngredientInfo> getRecipes(
+    public Page<?> getRecipes(
             @RequestParam(name = "scope", defaultValue = "mine") String scope,
             @RequestParam(name = "filter", defaultValue = "") String filter,
+            @RequestParam(name = "mode", defaultValue = "contains") String mode,
+            @RequestParam(name = "view", defaultValue = "full") String view,
             @RequestParam(name = "page", defaultValue = "0") int page,
-            @RequestParam(name = "pageSize", defaultValue = "99999") int pageSize
+            @RequestParam(name = "pageSize", defaultValue = "50") int pageSize,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "label", required = false) List<String> labels,
+            @RequestParam(name = "facets", defaultValue = "false") boolean facets
     ) {
-        Slice<Recipe> rs = recipeService.searchRecipes(scope, filter, PageRequest.of(page, pageSize));
-        return Page.from(rs.map(ingredientMapper::recipeToInfo));
+        // numbered pages past the first still work, for older clients
+        Pageable pageable = page > 0 && after == null
+                ? PageRequest.of(page, pageSize)
+                : KeysetPageRequest.of(pageSize, after);
+        boolean fullText = "text".equals(mode);
+        if (labels == null) labels = Collections.emptyList();
+        Slice<Recipe> rs = recipeService.searchRecipes(scope, filter, fullText, labels, pageable);
+        Page<?> result = "summary".equals(view)
+                ? Page.from(new SliceImpl<>(
+                        ingredientMapper.recipesToSummaries(rs.getContent()),
+                        rs.getPageable(),
+                        rs.hasNext()))
+                : Page.from(rs.map(ingredientMapper::recipeToInfo));
+        if (facets) {
+            result.setFacets(recipeService.countLabels(scope, filter, fullText, labels));
+        }
+        return result;
     }
 
     @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -77,7 +100,7 @@ public class RecipeController {
         // end kludge (1 of 3)
 
         if (info.isCookThis()) {
-            recipe.getIngredients().forEach(itemService::autoRecognize);
+            itemService.autoRecognizeAll(recipe.getIngredients());
         }
 
         Recipe recipe1 = recipeService.createNewRecipe(recipe);
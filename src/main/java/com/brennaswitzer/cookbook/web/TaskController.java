@@ -55,7 +55,7 @@ public class TaskController {
     public TaskInfo getTask(
             @PathVariable("id") Long id
     ) {
-        return TaskInfo.fromTask(taskService.getTaskById(id));
+        return taskService.getTaskInfoById(id);
     }
 
     @GetMapping("/{id}/subtasks")
@@ -63,9 +63,7 @@ public class TaskController {
     public List<TaskInfo> getSubtasks(
             @PathVariable("id") Long parentId
     ) {
-        return TaskInfo.fromTasks(taskService
-                .getTaskById(parentId)
-                .getOrderedSubtasksView());
+        return taskService.getSubtaskInfosById(parentId);
     }
 
     @PutMapping("/{id}/name")
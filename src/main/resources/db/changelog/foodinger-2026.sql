@@ -0,0 +1,100 @@
+--liquibase formatted sql
+
+--changeset bboisvert:ingredient-canonical-name
+alter table ingredient
+    add column canonical_name varchar(255);
+update ingredient
+set canonical_name = lower(name);
+-- pattern ops, so prefix matching (like 'foo%') can seek it too
+create index idx_ingredient_canonical_name
+    on ingredient (canonical_name varchar_pattern_ops);
+
+--changeset bboisvert:plan-change-log
+alter table task
+    add change_seq bigint null;
+
+create table plan_change (
+    id bigint not null default nextval('id_seq'),
+    created_at timestamptz not null default now(),
+    updated_at timestamptz not null default now(),
+    _eqkey bigint not null default date_part('epoch'::text, clock_timestamp()),
+    plan_id bigint not null,
+    seq bigint not null,
+    task_id bigint not null,
+    removed boolean not null default false,
+    constraint pk_plan_change primary key (id),
+    constraint uk_plan_change__eqkey unique (_eqkey),
+    constraint fk_plan_change_plan_id foreign key (plan_id) references task (id) on delete cascade
+);
+
+create index idx_plan_change_plan_seq
+    on plan_change (plan_id, seq);
+
+--changeset bboisvert:task-plan-id
+alter table task
+    add plan_id bigint null,
+    add constraint fk_task_plan_id foreign key (plan_id) references task (id) on delete cascade;
+
+with recursive tree (id, plan_id) as (
+    select id, id
+    from task
+    where _type = 'plan'
+    union all
+    select t.id, tree.plan_id
+    from task t
+        join tree on t.parent_id = tree.id
+)
+update task
+set plan_id = tree.plan_id
+from tree
+where task.id = tree.id
+  and task._type != 'plan';
+
+create index idx_task_plan_id
+    on task (plan_id);
+
+--changeset bboisvert:recipe-search-vector-function splitStatements:false
+-- Name hits (A) outrank labels (B), ingredients (C), and directions (D).
+-- Hidden labels start with two dashes, spelled with repeat() so they can't be
+-- mistaken for a comment.
+create or replace function recipe_search_vector(recipe_id bigint)
+    returns tsvector
+    language sql
+    stable
+as
+$$
+select setweight(to_tsvector('english', coalesce(r.name, '')), 'A')
+           || setweight(to_tsvector('english', coalesce((
+        select string_agg(l.name, ' ')
+        from ingredient_labels il
+            join label l on l.id = il.label_id
+        where il.ingredient_id = r.id
+          and l.name not like repeat('-', 2) || '%'), '')), 'B')
+           || setweight(to_tsvector('english', coalesce((
+        select string_agg(coalesce(i.name, ri.raw), ' ')
+        from recipe_ingredients ri
+            left join ingredient i on i.id = ri.ingredient_id
+        where ri.recipe_id = r.id), '')), 'C')
+           || setweight(to_tsvector('english', coalesce(r.directions, '')), 'D')
+from ingredient r
+where r.id = recipe_id
+$$;
+
+--changeset bboisvert:recipe-search-vector
+alter table ingredient
+    add search_vector tsvector null;
+
+update ingredient
+set search_vector = recipe_search_vector(id)
+where dtype = 'Recipe';
+
+create index idx_ingredient_search_vector
+    on ingredient using gin (search_vector);
+
+--changeset bboisvert:ingredient-name-trigram-index
+-- Trigrams let "contains" searches (canonical_name like '%foo%') use an index,
+-- which a btree can't do, even with varchar_pattern_ops.
+create extension if not exists pg_trgm;
+
+create index idx_ingredient_canonical_name_trgm
+    on ingredient using gin (canonical_name gin_trgm_ops);
@@ -4,6 +4,9 @@ import com.brennaswitzer.cookbook.util.RecipeBox;
 import lombok.val;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.brennaswitzer.cookbook.util.TaskTestUtils.renderTree;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -117,6 +120,84 @@ public class TaskTest {
         assertBefore(bagels, chicken);
     }
 
+    @Test
+    public void addSubtaskAfter_onlyMovesOne() {
+        Task groceries = new Task("Groceries");
+        List<Task> items = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Task t = new Task("item " + i);
+            groceries.addSubtask(t);
+            items.add(t);
+        }
+        int[] before = items.stream().mapToInt(Task::getPosition).toArray();
+
+        Task last = items.get(299);
+        groceries.addSubtaskAfter(last, items.get(149));
+        Task first = items.get(0);
+        groceries.addSubtaskAfter(first, null);
+
+        assertBefore(items.get(149), last);
+        assertBefore(last, items.get(150));
+        for (int i = 1; i < 299; i++) {
+            assertEquals(before[i], items.get(i).getPosition());
+        }
+    }
+
+    @Test
+    public void addSubtaskAfter_renumbersWhenFull() {
+        Task groceries = new Task("Groceries");
+        Task apples = new Task("Apples");
+        Task bagels = new Task("Bagels");
+        groceries.addSubtask(apples);
+        groceries.addSubtask(bagels);
+        // keep squeezing new items in right after apples
+        List<Task> expected = new ArrayList<>();
+        expected.add(apples);
+        for (int i = 0; i < 50; i++) {
+            Task t = new Task("item " + i);
+            groceries.addSubtaskAfter(t, apples);
+            expected.add(1, t);
+        }
+        expected.add(bagels);
+
+        assertEquals(expected, groceries.getOrderedSubtasksView());
+    }
+
+    @Test
+    public void getTaskList() {
+        TaskList groceries = new TaskList("Groceries");
+        TaskList party = new TaskList("Party");
+        Task salsa = new Task("Salsa");
+        Task tomatoes = new Task("Tomatoes");
+        Task onion = new Task("Onion");
+        salsa.addSubtask(tomatoes);
+        tomatoes.addSubtask(onion);
+        assertNull(salsa.getTaskList());
+        assertNull(onion.getTaskList());
+
+        groceries.addSubtask(salsa);
+        assertSame(groceries, groceries.getTaskList());
+        assertSame(groceries, salsa.getTaskList());
+        assertSame(groceries, onion.getTaskList());
+
+        // the whole subtree moves
+        party.addSubtask(salsa);
+        assertSame(party, salsa.getTaskList());
+        assertSame(party, tomatoes.getTaskList());
+        assertSame(party, onion.getTaskList());
+
+        // but not out of its plan
+        salsa.addSubtask(onion);
+        assertSame(party, onion.getTaskList());
+
+        salsa.moveToTrash();
+        assertSame(party, salsa.getTaskList());
+
+        party.removeSubtask(salsa);
+        assertNull(salsa.getTaskList());
+        assertNull(onion.getTaskList());
+    }
+
     @Test
     public void toString_() {
         Task groceries = new Task("Groceries");
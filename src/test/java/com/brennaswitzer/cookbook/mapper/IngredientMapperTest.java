@@ -0,0 +1,67 @@
+package com.brennaswitzer.cookbook.mapper;
+
+import com.brennaswitzer.cookbook.domain.Recipe;
+import com.brennaswitzer.cookbook.payload.RecipeSummaryInfo;
+import com.brennaswitzer.cookbook.util.RecipeBox;
+import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
+import com.brennaswitzer.cookbook.util.WithAliceBobEve;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+@WithAliceBobEve
+public class IngredientMapperTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserPrincipalAccess principalAccess;
+
+    @Autowired
+    private IngredientMapper mapper;
+
+    @Test
+    public void recipesToSummaries() {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, principalAccess.getUser());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<RecipeSummaryInfo> infos = mapper.recipesToSummaries(Arrays.asList(
+                entityManager.find(Recipe.class, box.pizza.getId()),
+                entityManager.find(Recipe.class, box.pizzaCrust.getId()),
+                entityManager.find(Recipe.class, box.spanishAppleCake.getId())));
+
+        assertEquals(3, infos.size());
+        RecipeSummaryInfo pizza = infos.get(0);
+        assertEquals(box.pizza.getId(), pizza.getId());
+        assertEquals("Recipe", pizza.getType());
+        assertEquals("Pizza", pizza.getName());
+        assertEquals(principalAccess.getId(), pizza.getOwnerId());
+        assertEquals(Collections.singletonList("dinner"), pizza.getLabels());
+        assertEquals(Collections.singletonList("make ahead"), infos.get(1).getLabels());
+        assertNull(infos.get(2).getLabels());
+    }
+
+    @Test
+    public void noRecipesToSummaries() {
+        assertTrue(mapper.recipesToSummaries(Collections.emptyList()).isEmpty());
+    }
+
+}
@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.Iterator;
 
+import static com.brennaswitzer.cookbook.util.LikeUtils.containing;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
@@ -38,29 +39,43 @@ public class IngredientRepositoryTest {
         RecipeBox box = new RecipeBox();
         box.persist(entityManager, principalAccess.getUser());
 
-        Iterator<Ingredient> itr = repo.findByNameContainsIgnoreCaseOrderByNameIgnoreCaseAscIdAsc("f")
+        Iterator<Ingredient> itr = repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("f"))
                 .iterator();
         assertEquals("flour", itr.next().getName());
         assertEquals("fresh tomatoes", itr.next().getName());
         assertEquals("Fried Chicken", itr.next().getName());
         assertFalse(itr.hasNext());
 
-        itr = repo.findByNameContainsIgnoreCaseOrderByNameIgnoreCaseAscIdAsc("fr")
+        itr = repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("fr"))
                 .iterator();
         assertEquals("fresh tomatoes", itr.next().getName());
         assertEquals("Fried Chicken", itr.next().getName());
         assertFalse(itr.hasNext());
 
-        itr = repo.findByNameContainsIgnoreCaseOrderByNameIgnoreCaseAscIdAsc("ea")
+        itr = repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("ea"))
                 .iterator();
         assertEquals("italian seasoning", itr.next().getName());
         assertEquals("yeast", itr.next().getName());
         assertFalse(itr.hasNext());
 
-        itr = repo.findByNameContainsIgnoreCaseOrderByNameIgnoreCaseAscIdAsc("cru")
+        itr = repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("cru"))
                 .iterator();
         assertEquals("Pizza Crust", itr.next().getName());
         assertFalse(itr.hasNext());
     }
 
+    @Test
+    public void nameContainsWildcardsLiterally() {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, principalAccess.getUser());
+
+        // unescaped, these would match every name
+        assertFalse(repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("_"))
+                .iterator()
+                .hasNext());
+        assertFalse(repo.findAllByCanonicalNameLikeOrderByCanonicalNameAscIdAsc(containing("%"))
+                .iterator()
+                .hasNext());
+    }
+
 }
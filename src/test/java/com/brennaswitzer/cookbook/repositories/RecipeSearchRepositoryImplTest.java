@@ -2,6 +2,7 @@ package com.brennaswitzer.cookbook.repositories;
 
 import com.brennaswitzer.cookbook.domain.Recipe;
 import com.brennaswitzer.cookbook.domain.User;
+import com.brennaswitzer.cookbook.util.KeysetPageRequest;
 import com.brennaswitzer.cookbook.util.RecipeBox;
 import com.brennaswitzer.cookbook.util.UserPrincipalAccess;
 import com.brennaswitzer.cookbook.util.WithAliceBobEve;
@@ -11,15 +12,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -155,4 +164,164 @@ public class RecipeSearchRepositoryImplTest {
         assertEquals("Pizza Sauce", l.get(1).getName());
     }
 
+    @Test
+    public void fullTextRanking() {
+        List<Recipe> l = repo.fullTextSearchRecipesByOwner(null, "pizza dinner", PageRequest.of(0, 10))
+                .getContent();
+        l.stream().map(Recipe::getName).forEach(System.out::println);
+        assertEquals("Pizza", l.get(0).getName()); // both
+        assertEquals("Pizza Crust", l.get(1).getName()); // name
+        assertEquals("Pizza Sauce", l.get(2).getName()); // name
+        assertEquals("ZZZ Dinner", l.get(3).getName()); // name
+        assertEquals("Fried Chicken", l.get(4).getName()); // label
+        assertEquals(5, l.size());
+    }
+
+    @Test
+    public void fullTextStemsAndPrefixes() {
+        List<Recipe> l = repo.fullTextSearchRecipesByOwner(null, "kneading", PageRequest.of(0, 10))
+                .getContent();
+        assertEquals(1, l.size());
+        assertEquals("Pizza Crust", l.get(0).getName());
+
+        l = repo.fullTextSearchRecipesByOwner(null, "piz", PageRequest.of(0, 10))
+                .getContent();
+        assertEquals(3, l.size());
+        assertEquals("Pizza", l.get(0).getName());
+    }
+
+    @Test
+    public void fullTextIngredients() {
+        List<Recipe> l = repo.fullTextSearchRecipesByOwner(null, "tomato", PageRequest.of(0, 10))
+                .getContent();
+        assertEquals(1, l.size());
+        assertEquals("Pizza Sauce", l.get(0).getName());
+    }
+
+    @Test
+    public void fullTextPagingAndOwners() {
+        List<Recipe> l = repo.fullTextSearchRecipesByOwner(null, "pizza", PageRequest.of(1, 2))
+                .getContent();
+        assertEquals(1, l.size());
+        assertEquals("Pizza Sauce", l.get(0).getName());
+
+        User alice = principalAccess.getUser();
+        @SuppressWarnings("OptionalGetWithoutIsPresent")
+        User bob = userRepository.findByEmail("bob@example.com").get();
+        assertEquals(3, repo.fullTextSearchRecipesByOwner(Collections.singletonList(alice), "pizza", PageRequest.of(0, 10))
+                .getNumberOfElements());
+        assertEquals(0, repo.fullTextSearchRecipesByOwner(Collections.singletonList(bob), "pizza", PageRequest.of(0, 10))
+                .getNumberOfElements());
+    }
+
+    @Test
+    public void keysetPaging() {
+        for (String filter : Arrays.asList("", "pizza", "pizza dinner", "zzz dinner")) {
+            assertEquals(
+                    names(repo.searchRecipes(filter, PageRequest.of(0, 10)).getContent()),
+                    walkPages(p -> repo.searchRecipes(filter, p)),
+                    filter);
+        }
+    }
+
+    @Test
+    public void keysetPagingWildcardsInFilter() {
+        // LIKE sees these as wildcards, so the seek key must rank the same way
+        for (String filter : Arrays.asList("pizza_", "pizza_ dinner", "p%a")) {
+            assertEquals(
+                    names(repo.searchRecipes(filter, PageRequest.of(0, 10)).getContent()),
+                    walkPages(p -> repo.searchRecipes(filter, p)),
+                    filter);
+        }
+    }
+
+    @Test
+    public void keysetWithPage() {
+        KeysetPageRequest p = KeysetPageRequest.of(3, "token");
+        Pageable first = p.withPage(0);
+        assertTrue(first instanceof KeysetPageRequest);
+        assertNull(((KeysetPageRequest) first).getAfter());
+        assertEquals(PageRequest.of(2, 3), p.withPage(2));
+    }
+
+    @Test
+    public void fullTextKeysetPaging() {
+        for (String filter : Arrays.asList("pizza", "pizza dinner", "piz")) {
+            assertEquals(
+                    names(repo.fullTextSearchRecipesByOwner(null, filter, PageRequest.of(0, 10)).getContent()),
+                    walkPages(p -> repo.fullTextSearchRecipesByOwner(null, filter, p)),
+                    filter);
+        }
+    }
+
+    @Test
+    public void keysetLastPage() {
+        Slice<Recipe> s = repo.searchRecipes("pizza", KeysetPageRequest.of(3, null));
+        assertTrue(s.isFirst());
+        assertTrue(s.isLast());
+        assertEquals(3, s.getNumberOfElements());
+    }
+
+    @Test
+    public void labelCounts() {
+        Map<String, Long> counts = repo.countLabelsByOwner(null, "", Collections.emptySet());
+        assertEquals(Arrays.asList("dinner", "make ahead"), new ArrayList<>(counts.keySet()));
+        assertEquals(2L, counts.get("dinner"));
+        assertEquals(2L, counts.get("make ahead"));
+
+        counts = repo.countLabelsByOwner(null, "pizza", Collections.emptySet());
+        assertEquals(1L, counts.get("dinner"));
+        assertEquals(2L, counts.get("make ahead"));
+
+        counts = repo.countLabelsByOwner(null, "knead", Collections.emptySet());
+        assertEquals(Collections.singletonMap("make ahead", 1L), counts);
+    }
+
+    @Test
+    public void labelDrillDown() {
+        List<String> makeAhead = Collections.singletonList("make ahead");
+        assertEquals(Arrays.asList("Pizza Crust", "Pizza Sauce"),
+                     names(repo.searchRecipesByOwner(null, "pizza", makeAhead, PageRequest.of(0, 10))
+                                   .getContent()));
+        assertEquals(Collections.singletonMap("make ahead", 2L),
+                     repo.countLabelsByOwner(null, "pizza", makeAhead));
+        assertEquals(Arrays.asList("Fried Chicken", "Pizza"),
+                     names(repo.searchRecipesByOwner(null, "", Collections.singletonList("dinner"), PageRequest.of(0, 10))
+                                   .getContent()));
+        assertEquals(0, repo.searchRecipesByOwner(null, "", Arrays.asList("dinner", "make ahead"), PageRequest.of(0, 10))
+                .getNumberOfElements());
+    }
+
+    @Test
+    public void fullTextLabelCountsAndDrillDown() {
+        Map<String, Long> counts = repo.fullTextCountLabelsByOwner(null, "pizza dinner", Collections.emptySet());
+        assertEquals(2L, counts.get("dinner"));
+        assertEquals(2L, counts.get("make ahead"));
+
+        List<String> dinner = Collections.singletonList("dinner");
+        assertEquals(Arrays.asList("Pizza", "Fried Chicken"),
+                     names(repo.fullTextSearchRecipesByOwner(null, "pizza dinner", dinner, PageRequest.of(0, 10))
+                                   .getContent()));
+        assertEquals(Collections.singletonMap("dinner", 2L),
+                     repo.fullTextCountLabelsByOwner(null, "pizza dinner", dinner));
+    }
+
+    private List<String> walkPages(Function<Pageable, Slice<Recipe>> search) {
+        List<String> names = new ArrayList<>();
+        Pageable p = KeysetPageRequest.of(2, null);
+        while (true) {
+            Slice<Recipe> s = search.apply(p);
+            assertEquals(names.isEmpty(), s.isFirst());
+            names.addAll(names(s.getContent()));
+            if (!s.hasNext()) return names;
+            p = s.nextPageable();
+        }
+    }
+
+    private List<String> names(List<Recipe> recipes) {
+        return recipes.stream()
+                .map(Recipe::getName)
+                .collect(Collectors.toList());
+    }
+
 }
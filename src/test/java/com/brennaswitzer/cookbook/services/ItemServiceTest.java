@@ -12,12 +12,18 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -198,4 +204,135 @@ public class ItemServiceTest {
 
     }
 
+    @Test
+    public void recognizeItems() {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, principalAccess.getUser());
+        Long flour = pantryItemId("flour");
+
+        List<RecognizedItem> items = service.recognizeItems(Arrays.asList(
+                "3 & 1/2 cup whole wheat flour",
+                "2 cup chicken thighs",
+                "",
+                "1 \"pizza crust\", thawed",
+                "1 tbsp \"shiny new thing\"",
+                null,
+                "1 c flour",
+                "2 _Tbsp_ sugar"));
+
+        assertEquals(8, items.size());
+        assertRanges(items.get(0),
+                new Object[]{0, 7, RecognizedItem.Type.AMOUNT, 3.5},
+                new Object[]{8, 11, RecognizedItem.Type.UNIT, box.cup.getId()},
+                new Object[]{24, 29, RecognizedItem.Type.ITEM, flour});
+        assertRanges(items.get(1),
+                new Object[]{0, 1, RecognizedItem.Type.AMOUNT, 2.0},
+                new Object[]{2, 5, RecognizedItem.Type.UNIT, box.cup.getId()},
+                new Object[]{6, 20, RecognizedItem.Type.ITEM, pantryItemId("chicken thigh")});
+        assertNull(items.get(2));
+        assertRanges(items.get(3),
+                new Object[]{0, 1, RecognizedItem.Type.AMOUNT, 1.0},
+                new Object[]{2, 15, RecognizedItem.Type.ITEM, box.pizzaCrust.getId()});
+        assertRanges(items.get(4),
+                new Object[]{0, 1, RecognizedItem.Type.AMOUNT, 1.0},
+                new Object[]{2, 6, RecognizedItem.Type.UNIT, box.tbsp.getId()},
+                new Object[]{7, 24, RecognizedItem.Type.NEW_ITEM, null});
+        assertNull(items.get(5));
+        // the same ingredient and unit as the first item
+        assertRanges(items.get(6),
+                new Object[]{0, 1, RecognizedItem.Type.AMOUNT, 1.0},
+                new Object[]{2, 3, RecognizedItem.Type.UNIT, box.cup.getId()},
+                new Object[]{4, 9, RecognizedItem.Type.ITEM, flour});
+        assertRanges(items.get(7),
+                new Object[]{0, 1, RecognizedItem.Type.AMOUNT, 2.0},
+                new Object[]{2, 8, RecognizedItem.Type.UNIT, box.tbsp.getId()},
+                new Object[]{9, 14, RecognizedItem.Type.ITEM, pantryItemId("sugar")});
+    }
+
+    private Long pantryItemId(String name) {
+        return entityManager.createQuery("select id from PantryItem where name = :name", Long.class)
+                .setParameter("name", name)
+                .getSingleResult();
+    }
+
+    // each expected range is {start, end, type, value}
+    private static void assertRanges(RecognizedItem item, Object[]... expected) {
+        List<RecognizedItem.Range> ranges = new ArrayList<>(item.getRanges());
+        assertEquals(expected.length, ranges.size(), ranges::toString);
+        for (int i = 0; i < expected.length; i++) {
+            RecognizedItem.Range r = ranges.get(i);
+            assertEquals(expected[i][0], r.getStart());
+            assertEquals(expected[i][1], r.getEnd());
+            assertEquals(expected[i][2], r.getType());
+            assertEquals(expected[i][3], r.getValue());
+        }
+    }
+
+    @Test
+    public void recognitionSession() {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, principalAccess.getUser());
+
+        String raw = "2 cup chick";
+        RecognitionSession session = service.openRecognitionSession(raw);
+        RecognizedItem item = service.recognizeRecognitionSession(session, raw.length());
+        assertEquals(service.recognizeItem(raw), item);
+
+        for (char c : "en thighs".toCharArray()) {
+            item = service.editRecognitionSession(session.getId(), raw.length(), 0, String.valueOf(c), raw.length() + 1);
+            raw += c;
+            assertEquals(raw, session.getRaw());
+            assertEquals(service.recognizeItem(raw), item);
+        }
+        // replace "2 cup" with "3 tbsp"
+        item = service.editRecognitionSession(session.getId(), 0, 5, "3 tbsp", 6);
+        raw = "3 tbsp chicken thighs";
+        assertEquals(service.recognizeItem(raw, 6), item);
+
+        service.closeRecognitionSession(session.getId());
+    }
+
+    @Test
+    public void recognitionSessionEdits() {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, principalAccess.getUser());
+
+        String raw = "2 cup chicken thighs, diced";
+        RecognitionSession session = service.openRecognitionSession(raw);
+        assertSameRecognition(service.recognizeItem(raw), service.recognizeRecognitionSession(session, raw.length()));
+
+        // {offset, deleted, inserted}, applied in order
+        Object[][] edits = {
+                {0, 1, "10"},
+                {7, 0, "boneless "},
+                {7, 9, ""},
+                {7, 8, ""},
+                {7, 0, "chicken "},
+                {3, 4, "tbsp "},
+                {29, 0, " small"},
+        };
+        for (Object[] e : edits) {
+            int offset = (Integer) e[0];
+            int deleted = (Integer) e[1];
+            String inserted = (String) e[2];
+            raw = raw.substring(0, offset) + inserted + raw.substring(offset + deleted);
+            int cursor = offset + inserted.length();
+            RecognizedItem item = service.editRecognitionSession(session.getId(), offset, deleted, inserted, cursor);
+            assertEquals(raw, session.getRaw());
+            assertSameRecognition(service.recognizeItem(raw, cursor), item);
+        }
+        // the edits never touched the amount
+        assertNotNull(session.findSection(0, 2, RecognizedItem.Type.AMOUNT));
+
+        service.closeRecognitionSession(session.getId());
+    }
+
+    private static void assertSameRecognition(RecognizedItem expected, RecognizedItem actual) {
+        assertEquals(expected, actual);
+        // ranges' equality ignores their values
+        assertEquals(
+                expected.getRanges().stream().map(RecognizedItem.Range::getValue).collect(Collectors.toList()),
+                actual.getRanges().stream().map(RecognizedItem.Range::getValue).collect(Collectors.toList()));
+    }
+
 }
@@ -0,0 +1,235 @@
+package com.brennaswitzer.cookbook.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlanCommandExecutorTest {
+
+    private static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private final AtomicInteger commits = new AtomicInteger();
+
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+
+    }
+
+    private CountingTransactionManager txManager;
+
+    private PlanCommandExecutor executor;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    public void setUp() {
+        txManager = new CountingTransactionManager();
+        executor = new PlanCommandExecutor();
+        executor.setTransactionManager(txManager);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        callers.shutdownNow();
+        executor.shutdown();
+    }
+
+    @Test
+    public void execute() {
+        assertEquals("hi", executor.execute(1L, () -> "hi"));
+        assertEquals(1, txManager.commits.get());
+    }
+
+    @Test
+    public void samePlanIsSerializedAndBatched() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        Future<Integer> first = callers.submit(() -> executor.execute(1L, () -> {
+            running.countDown();
+            await(release);
+            return 0;
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // these queue up behind the first
+        List<Future<Integer>> rest = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            int n = i;
+            rest.add(callers.submit(() -> executor.execute(1L, () -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                concurrent.decrementAndGet();
+                return n;
+            })));
+        }
+        awaitTrue(() -> executor.getWaitingCount(1L) == 10);
+        release.countDown();
+        assertEquals(0, first.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < rest.size(); i++) {
+            assertEquals(i + 1, rest.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, maxConcurrent.get());
+        // the first alone, then the rest together
+        assertEquals(2, txManager.commits.get());
+    }
+
+    @Test
+    public void differentPlansRunInParallel() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        Future<Boolean> one = callers.submit(() -> executor.execute(1L, () -> {
+            bothRunning.countDown();
+            return await(bothRunning);
+        }));
+        Future<Boolean> two = callers.submit(() -> executor.execute(2L, () -> {
+            bothRunning.countDown();
+            return await(bothRunning);
+        }));
+        assertTrue(one.get(5, TimeUnit.SECONDS));
+        assertTrue(two.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void busyPlansTakeTurns() throws Exception {
+        int busy = PlanCommandExecutor.WRITER_THREADS;
+        CountDownLatch running = new CountDownLatch(busy);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch releaseAgain = new CountDownLatch(1);
+        List<Future<Boolean>> firsts = new ArrayList<>();
+        for (long plan = 1; plan <= busy; plan++) {
+            long p = plan;
+            firsts.add(callers.submit(() -> executor.execute(p, () -> {
+                running.countDown();
+                return await(release);
+            })));
+        }
+        // every writer is busy
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        List<Future<Boolean>> seconds = new ArrayList<>();
+        for (long plan = 1; plan <= busy; plan++) {
+            long p = plan;
+            seconds.add(callers.submit(() -> executor.execute(p, () ->
+                    await(releaseAgain))));
+            awaitTrue(() -> executor.getWaitingCount(p) == 1);
+        }
+        Long idle = busy + 1L;
+        Future<String> other = callers.submit(() -> executor.execute(idle, () -> "other"));
+        awaitTrue(() -> executor.getWaitingDrainCount() == 1);
+        release.countDown();
+        // while the busy plans still have commands running
+        assertEquals("other", other.get(5, TimeUnit.SECONDS));
+        releaseAgain.countDown();
+        for (Future<Boolean> f : firsts) assertTrue(f.get(5, TimeUnit.SECONDS));
+        for (Future<Boolean> f : seconds) assertTrue(f.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureOnlyFailsItsCommand() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = callers.submit(() -> executor.execute(1L, () -> {
+            running.countDown();
+            await(release);
+            return 0;
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<Integer> good = callers.submit(() -> executor.execute(1L, () -> 1));
+        Future<Integer> bad = callers.submit(() -> executor.execute(1L, () -> {
+            throw new IllegalArgumentException("nope");
+        }));
+        Future<Integer> alsoGood = callers.submit(() -> executor.execute(1L, () -> 3));
+        awaitTrue(() -> executor.getWaitingCount(1L) == 3);
+        release.countDown();
+        assertEquals(0, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, good.get(5, TimeUnit.SECONDS));
+        assertEquals(3, alsoGood.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () ->
+                bad.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertTrue(txManager.rollbacks.get() > 0);
+    }
+
+    @Test
+    public void timeoutAbandonsWaitingCommand() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = callers.submit(() -> executor.execute(1L, () -> {
+            running.countDown();
+            await(release);
+            return 0;
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.setTimeout(100, TimeUnit.MILLISECONDS);
+        AtomicInteger ran = new AtomicInteger();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () ->
+                executor.execute(1L, ran::incrementAndGet));
+        assertTrue(e.getMessage().contains("not made"));
+        release.countDown();
+        assertEquals(0, first.get(5, TimeUnit.SECONDS));
+        assertEquals("after", executor.execute(1L, () -> "after"));
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    public void nestedExecuteDoesNotWait() {
+        assertEquals("inner", executor.execute(1L, () ->
+                executor.execute(1L, () -> "inner")));
+        assertEquals(1, txManager.commits.get());
+    }
+
+    @Test
+    public void nestedExecuteForAnotherPlanFails() {
+        AtomicInteger ran = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () ->
+                executor.execute(1L, () ->
+                        executor.execute(2L, ran::incrementAndGet)));
+        assertEquals(0, ran.get());
+        assertEquals(0, txManager.commits.get());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(1);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.message.PlanMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlanEventBroadcasterTest {
+
+    // the names of the events sent, in order
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch sending = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final PlanEventBroadcaster broadcaster = new PlanEventBroadcaster() {
+        @Override
+        SseEmitter createEmitter() {
+            return new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder builder) throws IOException {
+                    // a slow client: the first send waits to be released
+                    sending.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    String head = (String) builder.build().iterator().next().getData();
+                    sent.add(head.substring("event:".length(), head.indexOf('\n')));
+                }
+            };
+        }
+    };
+
+    @AfterEach
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void subscribeAndUnsubscribe() {
+        broadcaster.subscribe(1L, 10L);
+        broadcaster.subscribe(1L, 10L); // a second tab
+        broadcaster.subscribe(1L, 20L);
+        broadcaster.subscribe(2L, 10L);
+        assertEquals(3, broadcaster.getSubscriberCount(1L));
+        assertEquals(1, broadcaster.getSubscriberCount(2L));
+
+        broadcaster.unsubscribe(1L, 10L);
+        assertEquals(1, broadcaster.getSubscriberCount(1L));
+        assertEquals(1, broadcaster.getSubscriberCount(2L));
+
+        broadcaster.unsubscribe(1L, 20L);
+        assertEquals(0, broadcaster.getSubscriberCount(1L));
+    }
+
+    @Test
+    public void publishWithoutSubscribers() {
+        PlanMessage m = new PlanMessage();
+        m.setType("update");
+        m.setId(1L);
+        broadcaster.publish(1L, m);
+        broadcaster.publish(1L, null);
+        assertEquals(0, broadcaster.getSubscriberCount(1L));
+    }
+
+    @Test
+    public void slowSubscriberIsToldToResync() throws Exception {
+        broadcaster.subscribe(1L, 10L);
+        PlanMessage m = new PlanMessage();
+        m.setType("update");
+        m.setId(1L);
+        broadcaster.publish(1L, m);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        // far more than can be buffered while the first is being sent
+        for (int i = 0; i < PlanEventBroadcaster.MAX_BUFFERED * 5; i++) {
+            broadcaster.publish(1L, m);
+        }
+        release.countDown();
+        PlanMessage after = new PlanMessage();
+        after.setType("delete");
+        after.setId(1L);
+        awaitSent(2);
+        broadcaster.publish(1L, after);
+        awaitSent(3);
+        // the buffered updates were replaced by a single resync, and it
+        // stays subscribed for what comes after
+        assertEquals(Arrays.asList("update", PlanEventBroadcaster.RESYNC, "delete"), sent);
+        assertEquals(1, broadcaster.getSubscriberCount(1L));
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(1);
+        }
+    }
+
+}
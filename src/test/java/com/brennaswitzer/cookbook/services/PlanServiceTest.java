@@ -0,0 +1,264 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.PlanBucket;
+import com.brennaswitzer.cookbook.domain.Task;
+import com.brennaswitzer.cookbook.domain.TaskList;
+import com.brennaswitzer.cookbook.domain.TaskStatus;
+import com.brennaswitzer.cookbook.domain.User;
+import com.brennaswitzer.cookbook.message.PlanBatch;
+import com.brennaswitzer.cookbook.message.PlanMessage;
+import com.brennaswitzer.cookbook.message.RenamePlanTreeItem;
+import com.brennaswitzer.cookbook.payload.PlanChanges;
+import com.brennaswitzer.cookbook.payload.TaskInfo;
+import com.brennaswitzer.cookbook.repositories.TaskRepository;
+import com.brennaswitzer.cookbook.repositories.UserRepository;
+import com.brennaswitzer.cookbook.util.RecipeBox;
+import com.brennaswitzer.cookbook.util.WithAliceBobEve;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+@WithAliceBobEve
+public class PlanServiceTest {
+
+    @Autowired
+    private PlanService service;
+
+    @Autowired
+    private TaskRepository taskRepo;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlanChangeLog changeLog;
+
+    private User alice;
+
+    @BeforeEach
+    public void setUp() {
+        alice = userRepository.getByName("Alice");
+    }
+
+    @Test
+    public void getTreeInfoById() throws Exception {
+        RecipeBox box = new RecipeBox();
+        box.persist(entityManager, alice);
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        PlanBucket bucket = new PlanBucket("Monday");
+        bucket.setPlan(plan);
+        entityManager.persist(bucket);
+        Task banana = taskRepo.save(new Task("Banana").of(plan));
+        taskRepo.save(new Task("apple").of(plan));
+        taskRepo.save(new Task("split").of(banana));
+        Task old = taskRepo.save(new Task("old").of(banana));
+        banana.setBucket(bucket);
+        service.addRecipe(plan.getId(), box.pizza);
+        entityManager.flush();
+        old.moveToTrash();
+        entityManager.flush();
+        entityManager.clear();
+
+        List<TaskInfo> expected = TaskInfo.fromTasks(service.getTreeById(plan.getId()));
+        entityManager.clear();
+        List<TaskInfo> actual = service.getTreeInfoById(plan.getId());
+
+        assertEquals(
+                objectMapper.writeValueAsString(expected),
+                objectMapper.writeValueAsString(actual));
+        // streamed the same
+        entityManager.clear();
+        assertEquals(
+                objectMapper.writeValueAsString(expected),
+                objectMapper.writeValueAsString(service.streamTreeInfoById(plan.getId())));
+        // and a subtree
+        Long pizzaId = actual.stream()
+                .filter(it -> it.getName().equals(box.pizza.getName()))
+                .findFirst()
+                .get()
+                .getId();
+        entityManager.clear();
+        expected = TaskInfo.fromTasks(service.getTreeById(pizzaId));
+        entityManager.clear();
+        assertEquals(
+                objectMapper.writeValueAsString(expected),
+                objectMapper.writeValueAsString(service.getTreeInfoById(pizzaId)));
+    }
+
+    @Test
+    public void getTreeDeltasById() {
+        Instant cutoff = Instant.now().minusSeconds(60);
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        Task apple = taskRepo.save(new Task("apple").of(plan));
+        Task banana = taskRepo.save(new Task("banana").of(plan));
+        Task split = taskRepo.save(new Task("split").of(banana));
+        entityManager.flush();
+        banana.moveToTrash();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(
+                new HashSet<>(Arrays.asList(plan.getId(), apple.getId(), banana.getId())),
+                service.getTreeDeltasById(plan.getId(), cutoff)
+                        .stream()
+                        .map(TaskInfo::getId)
+                        .collect(Collectors.toSet()));
+        assertTrue(service.getTreeDeltasById(plan.getId(), Instant.now().plusSeconds(60))
+                .isEmpty());
+        assertEquals(plan.getId(), taskRepo.getReferenceById(split.getId())
+                .getTaskList()
+                .getId());
+    }
+
+    @Test
+    public void getChangesSince() {
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        Task apple = taskRepo.save(new Task("apple").of(plan));
+        changeLog.writePendingChanges();
+        long seq = service.getChangeSeq(plan.getId());
+        assertEquals(1, seq);
+
+        PlanChanges changes = service.getChangesSince(plan.getId(), seq);
+        assertEquals(seq, changes.getSeq());
+        assertTrue(changes.getItems().isEmpty());
+        assertTrue(changes.getDeletedIds().isEmpty());
+
+        Task banana = taskRepo.save(new Task("banana").of(plan));
+        changeLog.writePendingChanges();
+        changes = service.getChangesSince(plan.getId(), seq);
+        assertEquals(seq + 1, changes.getSeq());
+        assertFalse(changes.isReload());
+        // the plan's subtasks changed too
+        assertEquals(
+                new HashSet<>(Arrays.asList(plan.getId(), banana.getId())),
+                changes.getItems().stream()
+                        .map(TaskInfo::getId)
+                        .collect(Collectors.toSet()));
+
+        seq = changes.getSeq();
+        service.deleteItem(apple.getId());
+        changeLog.writePendingChanges();
+        changes = service.getChangesSince(plan.getId(), seq);
+        assertEquals(seq + 1, changes.getSeq());
+        TaskInfo info = changes.getItems().stream()
+                .filter(it -> it.getId().equals(apple.getId()))
+                .findFirst()
+                .get();
+        assertEquals(TaskStatus.DELETED, info.getStatus());
+
+        // from before the log begins
+        assertTrue(service.getChangesSince(plan.getId(), -1).isReload());
+    }
+
+    @Test
+    public void getChangesSinceMovedToAnotherPlan() {
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        TaskList other = taskRepo.save(new TaskList(alice, "other"));
+        Task apple = taskRepo.save(new Task("apple").of(plan));
+        changeLog.writePendingChanges();
+        long seq = service.getChangeSeq(plan.getId());
+        long otherSeq = service.getChangeSeq(other.getId());
+
+        apple.setParent(other);
+        changeLog.writePendingChanges();
+
+        PlanChanges changes = service.getChangesSince(plan.getId(), seq);
+        assertEquals(seq + 1, changes.getSeq());
+        assertEquals(Collections.singletonList(apple.getId()), changes.getDeletedIds());
+        changes = service.getChangesSince(other.getId(), otherSeq);
+        assertEquals(otherSeq + 1, changes.getSeq());
+        assertTrue(changes.getDeletedIds().isEmpty());
+        assertTrue(changes.getItems().stream()
+                .anyMatch(it -> it.getId().equals(apple.getId())));
+    }
+
+    @Test
+    public void applyBatch() throws Exception {
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        Task apple = taskRepo.save(new Task("apple").of(plan));
+        Task banana = taskRepo.save(new Task("banana").of(plan));
+        Task cherry = taskRepo.save(new Task("cherry").of(plan));
+        entityManager.flush();
+
+        PlanBatch batch = objectMapper.readValue("{\"actions\":[" +
+                "{\"type\":\"rename\",\"id\":" + apple.getId() + ",\"name\":\"Apple\"}," +
+                "{\"type\":\"status\",\"id\":" + banana.getId() + ",\"status\":\"COMPLETED\"}," +
+                "{\"type\":\"mutate-tree\",\"ids\":[" + cherry.getId() + "],\"parentId\":" + apple.getId() + "}" +
+                "]}", PlanBatch.class);
+        List<PlanMessage> messages = service.applyBatch(plan.getId(), batch.getActions());
+
+        assertEquals(
+                Arrays.asList("update", "delete", "tree-mutation"),
+                messages.stream()
+                        .map(PlanMessage::getType)
+                        .collect(Collectors.toList()));
+        assertEquals("Apple", apple.getName());
+        assertTrue(banana.isInTrashBin());
+        assertEquals(apple, cherry.getParent());
+    }
+
+    @Test
+    public void applyBatchToOnePlan() {
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        TaskList other = taskRepo.save(new TaskList(alice, "other"));
+        Task apple = taskRepo.save(new Task("apple").of(other));
+        entityManager.flush();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.applyBatch(plan.getId(), Collections.singletonList(
+                        new RenamePlanTreeItem(apple.getId(), "Apple"))));
+        assertEquals("apple", apple.getName());
+    }
+
+    @Test
+    public void applyToPlanRefusesOtherPlans() {
+        TaskList plan = taskRepo.save(new TaskList(alice, "plan"));
+        TaskList other = taskRepo.save(new TaskList(alice, "other"));
+        Task apple = taskRepo.save(new Task("apple").of(other));
+        PlanBucket bucket = new PlanBucket("Monday");
+        bucket.setPlan(other);
+        entityManager.persist(bucket);
+        entityManager.flush();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                service.applyToPlan(plan.getId(), () ->
+                        service.renameItem(apple.getId(), "Apple")));
+        assertEquals("apple", apple.getName());
+        assertThrows(IllegalArgumentException.class, () ->
+                service.applyToPlan(plan.getId(), () ->
+                        service.updateBucket(plan.getId(), bucket.getId(), "Tuesday", null)));
+        assertEquals("Monday", bucket.getName());
+
+        service.applyToPlan(other.getId(), () ->
+                service.renameItem(apple.getId(), "Apple"));
+        assertEquals("Apple", apple.getName());
+    }
+
+}
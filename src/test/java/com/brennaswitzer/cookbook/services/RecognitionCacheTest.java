@@ -0,0 +1,77 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.payload.RecognizedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RecognitionCacheTest {
+
+    private final RecognitionCache cache = new RecognitionCache();
+
+    private final AtomicInteger recognitions = new AtomicInteger();
+
+    private RecognizedItem get(Long userId, String raw) {
+        return cache.get(userId, raw, raw.length(), true, () -> {
+            recognitions.incrementAndGet();
+            return new RecognizedItem(raw);
+        });
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        RecognizedItem a = get(1L, "1 cup flour");
+        assertSame(a, get(1L, "1 cup flour"));
+        // different user
+        assertNotSame(a, get(2L, "1 cup flour"));
+        // different cursor
+        cache.get(1L, "1 cup flour", 3, true, () -> new RecognizedItem("1 cup flour", 3));
+
+        assertEquals(2, recognitions.get());
+        RecognitionCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(0, stats.getEvictions());
+    }
+
+    @Test
+    public void invalidation() {
+        RecognizedItem a = get(1L, "1 cup flour");
+        RecognizedItem b = get(2L, "1 cup flour");
+
+        cache.invalidateUser(1L);
+        RecognizedItem a2 = get(1L, "1 cup flour");
+        assertNotSame(a, a2);
+        assertSame(b, get(2L, "1 cup flour"));
+
+        cache.invalidateAll();
+        assertNotSame(a2, get(1L, "1 cup flour"));
+        assertNotSame(b, get(2L, "1 cup flour"));
+    }
+
+    @Test
+    public void invalidatedWhileRecognizing() {
+        RecognizedItem a = cache.get(1L, "egg", 3, true, () -> {
+            cache.invalidateAll();
+            return new RecognizedItem("egg");
+        });
+        // computed from stale data, so not kept
+        assertNotSame(a, get(1L, "egg"));
+    }
+
+    @Test
+    public void eviction() {
+        for (int i = 0; i <= RecognitionCache.MAX_ENTRIES_PER_USER; i++) {
+            get(1L, i + " eggs");
+        }
+        assertEquals(1, cache.getStats().getEvictions());
+        // the first one was least recently used
+        get(1L, "0 eggs");
+        assertEquals(RecognitionCache.MAX_ENTRIES_PER_USER + 2, recognitions.get());
+    }
+
+}
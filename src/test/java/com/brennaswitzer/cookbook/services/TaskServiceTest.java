@@ -1,8 +1,11 @@
 package com.brennaswitzer.cookbook.services;
 
 import com.brennaswitzer.cookbook.domain.AccessLevel;
+import com.brennaswitzer.cookbook.domain.PantryItem;
+import com.brennaswitzer.cookbook.domain.Quantity;
 import com.brennaswitzer.cookbook.domain.Task;
 import com.brennaswitzer.cookbook.domain.TaskList;
+import com.brennaswitzer.cookbook.domain.TaskStatus;
 import com.brennaswitzer.cookbook.domain.User;
 import com.brennaswitzer.cookbook.repositories.TaskListRepository;
 import com.brennaswitzer.cookbook.repositories.TaskRepository;
@@ -92,6 +95,38 @@ public class TaskServiceTest {
         assertEquals(0, v.getSubtaskCount());
     }
 
+    @Test
+    public void duplicateTaskList() {
+        PantryItem eggs = new PantryItem("eggs");
+        entityManager.persist(eggs);
+        TaskList groceries = listRepo.save(new TaskList(alice, "groceries"));
+        Task milk = taskRepo.save(new Task("milk").of(groceries));
+        Task dozen = new Task("2 dozen eggs, beaten", Quantity.count(24), eggs, "beaten");
+        dozen.setStatus(TaskStatus.ACQUIRED);
+        taskRepo.save(dozen.after(milk));
+        Task party = taskRepo.save(new Task("party").after(dozen));
+        taskRepo.save(new Task("chips").of(party));
+        taskRepo.save(new Task("dip").of(party)).moveToTrash();
+        taskRepo.flush();
+
+        TaskList copy = service.duplicateTaskList("more groceries", groceries.getId());
+        assertEquals("more groceries", copy.getName());
+        assertNotEquals(groceries.getId(), copy.getId());
+        // the trashed dip isn't copied
+        assertEquals(renderTree("groceries", groceries.getOrderedSubtasksView()),
+                renderTree("groceries", copy.getOrderedSubtasksView()));
+
+        Task copiedDozen = copy.getOrderedSubtasksView().get(1);
+        assertNotEquals(dozen.getId(), copiedDozen.getId());
+        assertEquals(TaskStatus.ACQUIRED, copiedDozen.getStatus());
+        assertEquals(eggs, copiedDozen.getIngredient());
+        assertEquals(24, copiedDozen.getQuantity().getQuantity());
+        assertEquals("beaten", copiedDozen.getPreparation());
+        Task copiedParty = copy.getOrderedSubtasksView().get(2);
+        assertEquals(copy, copiedParty.getTaskList());
+        assertEquals(copy, copiedParty.getOrderedSubtasksView().get(0).getTaskList());
+    }
+
     @Test
     public void createSubtask() {
         TaskList groceries = listRepo.save(new TaskList(alice,"groceries"));
@@ -106,18 +141,19 @@ public class TaskServiceTest {
         Task bagels = service.createSubtaskAfter(groceries.getId(), "bagels", oj.getId());
         assertEquals("bagels", bagels.getName());
         assertSame(groceries, bagels.getParent());
-        assertEquals(1, bagels.getPosition());
+        assertTrue(oj.getPosition() < bagels.getPosition());
         assertEquals(0, bagels.getSubtaskCount());
 
+        int bagelsPosition = bagels.getPosition();
         Task apples = service.createSubtask(groceries.getId(), "apples");
         assertEquals("apples", apples.getName());
         assertSame(groceries, apples.getParent());
-        assertEquals(0, apples.getPosition());
         assertEquals(0, apples.getSubtaskCount());
 
-        assertEquals(0, apples.getPosition());
-        assertEquals(1, oj.getPosition());
-        assertEquals(2, bagels.getPosition());
+        // only the new one was positioned
+        assertTrue(apples.getPosition() < oj.getPosition());
+        assertEquals(0, oj.getPosition());
+        assertEquals(bagelsPosition, bagels.getPosition());
 
         assertEquals(3, groceries.getSubtaskCount());
         Iterator<Task> itr = groceries.getOrderedSubtasksView().iterator();
@@ -161,9 +197,11 @@ public class TaskServiceTest {
         assertEquals("milk", itr.next().getName());
         assertEquals("OJ", itr.next().getName());
         itr = view.iterator();
-        assertEquals(0, itr.next().getPosition());
-        assertEquals(1, itr.next().getPosition());
-        assertEquals(2, itr.next().getPosition());
+        int bagelsPosition = itr.next().getPosition();
+        int milkPosition = itr.next().getPosition();
+        int ojPosition = itr.next().getPosition();
+        assertTrue(bagelsPosition < milkPosition);
+        assertTrue(milkPosition < ojPosition);
     }
 
     @Test
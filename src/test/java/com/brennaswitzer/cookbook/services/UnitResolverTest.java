@@ -0,0 +1,57 @@
+package com.brennaswitzer.cookbook.services;
+
+import com.brennaswitzer.cookbook.domain.UnitOfMeasure;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+public class UnitResolverTest {
+
+    @Autowired
+    private UnitResolver resolver;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private void assertSameAsQuery(String name) {
+        assertFalse(resolver.hasPendingChanges());
+        Optional<UnitOfMeasure> expected = UnitOfMeasure.find(entityManager, name);
+        Optional<UnitOfMeasure> actual = resolver.find(name);
+        assertEquals(expected.map(UnitOfMeasure::getId), actual.map(UnitOfMeasure::getId));
+    }
+
+    @Test
+    public void matchesQuery() {
+        // these are all loaded from units.yml at startup
+        assertSameAsQuery("cup");
+        assertSameAsQuery("cups");
+        assertSameAsQuery("c");
+        assertSameAsQuery("Tbsp");
+        assertSameAsQuery("TBSP");
+        assertSameAsQuery("tablespoons");
+        assertSameAsQuery(" oz ");
+        assertSameAsQuery("glergypants");
+    }
+
+    @Test
+    public void seesUncommittedUnits() {
+        assertFalse(resolver.find("smidgen").isPresent());
+        UnitOfMeasure smidgen = resolver.ensure("smidgens");
+        assertTrue(resolver.hasPendingChanges());
+        assertEquals(smidgen, resolver.find("smidgen").orElse(null));
+    }
+
+}
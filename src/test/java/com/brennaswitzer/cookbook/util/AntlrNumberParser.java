@@ -0,0 +1,121 @@
+package com.brennaswitzer.cookbook.util;
+
+import com.brennaswitzer.cookbook.antlr.NumberBaseVisitor;
+import com.brennaswitzer.cookbook.antlr.NumberLexer;
+import com.brennaswitzer.cookbook.antlr.NumberParser;
+import com.brennaswitzer.cookbook.util.NumberUtils.NumberWithRange;
+import com.brennaswitzer.cookbook.util.antlr.FastFailErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.util.function.BiFunction;
+
+/**
+ * I parse numbers with the {@code Number.g4} grammar, the way
+ * {@link NumberUtils} used to, as the reference for its hand-written scanner.
+ */
+final class AntlrNumberParser {
+
+    private static class NumVis extends NumberBaseVisitor<NumberWithRange> {
+
+        @Override
+        public NumberWithRange visitStart(NumberParser.StartContext ctx) {
+            NumberWithRange nwr = super.visitStart(ctx);
+            if (ctx.d == null) {
+                return nwr;
+            }
+            return aggregateResult(
+                    val(-1, ctx),
+                    nwr,
+                    (a, b) -> a * b
+            );
+        }
+
+        @Override
+        public NumberWithRange visitFraction(NumberParser.FractionContext ctx) {
+            if (ctx.vf != null) {
+                return visitVulgarFraction(ctx.vf);
+            }
+            return aggregateResult(
+                    visitInteger(ctx.n),
+                    visitInteger(ctx.d),
+                    (n, d) -> n / d
+            );
+        }
+
+        @Override
+        public NumberWithRange visitNumber(NumberParser.NumberContext ctx) {
+            if (ctx.f != null) {
+                return aggregateResult(visitInteger(ctx.i), visitFraction(ctx.f));
+            }
+            return super.visitNumber(ctx);
+        }
+
+        @Override
+        public NumberWithRange visitDecimal(NumberParser.DecimalContext ctx) {
+            return val(Double.parseDouble(ctx.getText()), ctx);
+        }
+
+        @Override
+        public NumberWithRange visitInteger(NumberParser.IntegerContext ctx) {
+            return val(Double.parseDouble(ctx.getText()), ctx);
+        }
+
+        @Override
+        public NumberWithRange visitVulgarFraction(NumberParser.VulgarFractionContext ctx) {
+            return val(ctx.val, ctx);
+        }
+
+        @Override
+        public NumberWithRange visitName(NumberParser.NameContext ctx) {
+            return val(ctx.val, ctx);
+        }
+
+        @Override
+        protected NumberWithRange aggregateResult(NumberWithRange aggregate, NumberWithRange nextResult) {
+            return aggregateResult(aggregate, nextResult, Double::sum);
+        }
+
+        private NumberWithRange aggregateResult(NumberWithRange aggregate, NumberWithRange nextResult, BiFunction<Double, Double, Double> combiner) {
+            if (aggregate == null) return nextResult;
+            if (nextResult == null) return aggregate;
+            return new NumberWithRange(
+                    combiner.apply(aggregate.getNumber(), nextResult.getNumber()),
+                    Math.min(aggregate.getStart(), nextResult.getStart()),
+                    Math.max(aggregate.getEnd(), nextResult.getEnd())
+            );
+        }
+
+        private NumberWithRange val(double val, ParserRuleContext ctx) {
+            return new NumberWithRange(
+                    val,
+                    ctx.start.getStartIndex(),
+                    ctx.stop.getStopIndex() + 1
+            );
+        }
+
+    }
+
+    static NumberWithRange parseNumberWithRange(String str) {
+        if (str == null) return null;
+        if (str.trim().isEmpty()) return null;
+        try {
+            NumberLexer lexer = new NumberLexer(CharStreams.fromString(str.toLowerCase()));
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+            NumberParser parser = new NumberParser(tokens);
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.addErrorListener(new FastFailErrorListener());
+            NumberWithRange result = new NumVis().visitStart(parser.start());
+            return new NumberWithRange(
+                    Math.round(result.getNumber() * 1000) / 1000.0,
+                    result.getStart(),
+                    result.getEnd()
+            );
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.junit.jupiter.api.Test;
+
+import static com.brennaswitzer.cookbook.util.EditDistance.bestSubstringMatch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EditDistanceTest {
+
+    private void assertMatch(int start, int end, int distance, EditDistance.Match m) {
+        assertEquals(start, m.getStart(), "start");
+        assertEquals(end, m.getEnd(), "end");
+        assertEquals(distance, m.getDistance(), "distance");
+    }
+
+    @Test
+    public void exact() {
+        assertMatch(6, 13, 0, bestSubstringMatch("tomatoe", "fresh tomatoes", 2));
+    }
+
+    @Test
+    public void insertion() {
+        assertMatch(0, 8, 1, bestSubstringMatch("brocoli", "broccoli", 2));
+    }
+
+    @Test
+    public void deletion() {
+        assertMatch(0, 8, 1, bestSubstringMatch("parmesean", "parmesan cheese", 2));
+    }
+
+    @Test
+    public void substitution() {
+        assertMatch(6, 13, 1, bestSubstringMatch("chickan", "fried chicken", 1));
+    }
+
+    @Test
+    public void tooFar() {
+        assertNull(bestSubstringMatch("xyzzy", "flour", 2));
+        assertNull(bestSubstringMatch("brocoli", "broccoli", 0));
+    }
+
+}
@@ -2,7 +2,14 @@ package com.brennaswitzer.cookbook.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import static com.brennaswitzer.cookbook.util.EnglishUtils.canonicalize;
+import static com.brennaswitzer.cookbook.util.EnglishUtils.searchTerms;
+import static com.brennaswitzer.cookbook.util.EnglishUtils.stem;
 import static com.brennaswitzer.cookbook.util.EnglishUtils.unpluralize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -22,6 +29,38 @@ public class EnglishUtilsTest {
         assertEquals("apple",    unpluralize("apples"));
     }
 
+    @Test
+    public void testStem() {
+        assertEquals("knead",  stem("knead"));
+        assertEquals("knead",  stem("kneads"));
+        assertEquals("knead",  stem("kneading"));
+        assertEquals("knead",  stem("kneaded"));
+        assertEquals("bak",    stem("bake"));
+        assertEquals("bak",    stem("baked"));
+        assertEquals("bak",    stem("baking"));
+        assertEquals("chop",   stem("chopped"));
+        assertEquals("chop",   stem("chopping"));
+        assertEquals("fry",    stem("fried"));
+        assertEquals("fry",    stem("fries"));
+        assertEquals("tomato", stem("tomatoes"));
+        assertEquals("peach",  stem("peaches"));
+        assertEquals("pizza",  stem("pizza"));
+        assertEquals("pizza",  stem("pizzas"));
+        assertEquals("seed",   stem("seeded"));
+        assertEquals("egg",    stem("eggs"));
+        assertEquals("roll",   stem("rolled"));
+        assertEquals("hummus", stem("hummus"));
+        assertEquals("pie",    stem("pie"));
+    }
+
+    @Test
+    public void testSearchTerms() {
+        assertEquals(Arrays.asList("knead", "dough", "10", "minut"),
+                searchTerms("Knead the dough, for 10 minutes!"));
+        assertEquals(Collections.emptyList(), searchTerms(" -- "));
+        assertEquals(Collections.emptyList(), searchTerms(null));
+    }
+
     @Test
     public void testCanonicalize() {
         assertEquals("egg", canonicalize("egg"));
@@ -33,4 +72,32 @@ public class EnglishUtilsTest {
         assertEquals("egg", canonicalize(" , egg , "));
     }
 
+    @Test
+    public void testCanonicalizeSpaces() {
+        assertEquals("fresh tomato", canonicalize("fresh   tomato"));
+        assertEquals("a b c", canonicalize("  a  b   c  "));
+        assertEquals("a\t b", canonicalize("a\t  b"));
+        assertEquals("", canonicalize(" , "));
+        assertEquals("", canonicalize(""));
+    }
+
+    @Test
+    public void canonicalizeMatchesRegexes() {
+        Pattern spaces = Pattern.compile("  +");
+        Pattern endPunct = Pattern.compile("(^[^a-zA-Z0-9]+)|([^a-zA-Z0-9]+$)");
+        char[] alphabet = "aZ9 ,.-\t\n\u00e9".toCharArray();
+        Random rand = new Random(12345);
+        for (int i = 0; i < 50_000; i++) {
+            char[] cs = new char[rand.nextInt(12)];
+            for (int j = 0; j < cs.length; j++) {
+                cs[j] = alphabet[rand.nextInt(alphabet.length)];
+            }
+            String s = new String(cs);
+            String expected = endPunct.matcher(spaces.matcher(s).replaceAll(" "))
+                    .replaceAll("")
+                    .trim();
+            assertEquals(expected, canonicalize(s), () -> "'" + s + "'");
+        }
+    }
+
 }
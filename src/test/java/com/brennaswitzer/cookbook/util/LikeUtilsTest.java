@@ -0,0 +1,29 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.junit.jupiter.api.Test;
+
+import static com.brennaswitzer.cookbook.util.LikeUtils.containing;
+import static com.brennaswitzer.cookbook.util.LikeUtils.escape;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LikeUtilsTest {
+
+    @Test
+    public void escapeWildcards() {
+        assertEquals("apple", escape("apple"));
+        assertEquals("100\\% rye", escape("100% rye"));
+        assertEquals("a\\_b", escape("a_b"));
+        assertEquals("a\\\\b", escape("a\\b"));
+        assertEquals("\\\\\\%", escape("\\%"));
+        assertNull(escape(null));
+    }
+
+    @Test
+    public void containingPattern() {
+        assertEquals("%apple%", containing("apple"));
+        assertEquals("%a\\_b%", containing("a_b"));
+        assertNull(containing(null));
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NGramIndexTest {
+
+    private NGramIndex<String> index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new NGramIndex<>();
+        index.put(5, "Pizza Crust", "pizzaCrust");
+        index.put(2, "flour", "flour");
+        index.put(9, "Fried Chicken", "friedChicken");
+        index.put(7, "fresh tomatoes", "freshTomatoes");
+    }
+
+    @Test
+    public void shortTermsInIdOrder() {
+        assertEquals(Arrays.asList("flour", "freshTomatoes", "friedChicken"),
+                index.search("f", 10));
+        assertEquals(Arrays.asList("freshTomatoes", "friedChicken"),
+                index.search("FR", 10));
+    }
+
+    @Test
+    public void longTermsAreVerified() {
+        assertEquals(Collections.singletonList("pizzaCrust"),
+                index.search("za cru", 10));
+        // every trigram is present, but not contiguously
+        assertEquals(Collections.emptyList(),
+                index.search("crustpiz", 10));
+    }
+
+    @Test
+    public void limit() {
+        assertEquals(Arrays.asList("flour", "freshTomatoes"),
+                index.search("f", 2));
+    }
+
+    @Test
+    public void putReplaces() {
+        index.put(2, "whole wheat flour", "flour");
+        assertEquals(Collections.singletonList("flour"),
+                index.search("wheat", 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void remove() {
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        assertFalse(index.contains(2));
+        assertEquals(Arrays.asList("freshTomatoes", "friedChicken"),
+                index.search("f", 10));
+    }
+
+    private List<String> searchSimilar(String term, int maxDistance) {
+        return index.searchSimilar(term, maxDistance, 10, System.nanoTime() + 1_000_000_000L)
+                .stream()
+                .map(NGramIndex.Hit::getValue)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void similar() {
+        assertEquals(Collections.singletonList("friedChicken"),
+                searchSimilar("chiken", 1));
+        assertEquals(Collections.singletonList("pizzaCrust"),
+                searchSimilar("piza crust", 1));
+        assertEquals(Collections.singletonList("pizzaCrust"),
+                searchSimilar("pizza crsut", 2));
+        assertEquals(Collections.emptyList(),
+                searchSimilar("pizza crsut", 1));
+    }
+
+    @Test
+    public void similarClosestFirst() {
+        index.put(11, "fried chickens", "friedChickens");
+        index.put(12, "chicken", "chicken");
+        List<NGramIndex.Hit<String>> hits = index.searchSimilar("chickn", 1, 10, System.nanoTime() + 1_000_000_000L);
+        assertEquals(Arrays.asList("friedChicken", "friedChickens", "chicken"),
+                hits.stream().map(NGramIndex.Hit::getValue).collect(Collectors.toList()));
+        assertEquals(1, hits.get(0).getDistance());
+        // exact matches beat typos
+        assertEquals(Arrays.asList("friedChicken", "friedChickens", "chicken"),
+                searchSimilar("chicken", 1));
+    }
+
+}
@@ -2,9 +2,12 @@ package com.brennaswitzer.cookbook.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static com.brennaswitzer.cookbook.util.NumberUtils.parseNumber;
 import static com.brennaswitzer.cookbook.util.NumberUtils.parseNumberWithRange;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class NumberUtilsTest {
@@ -97,4 +100,34 @@ public class NumberUtilsTest {
         assertEquals(17, nwr.getEnd());
     }
 
+    private static final String[] FRAGMENTS = {
+            "0", "1", "2", "3", "7", "10", "25", "100", "0.5", ".", ".25",
+            "1.2", "/", "⁄", "½", "¾", "⅓", "⅞", "-", "&", "and", "And",
+            " ", " ", " ", "  ", "\t", "a", "a half", "a  half", "half",
+            "one", "One Half", "two", "ten", "twelve", "seventeen", "nine",
+            "x", "cups", "onion", ",", "(", "é", "1,000", "\u00a0",
+    };
+
+    @Test
+    public void matchesGrammar() {
+        Random rand = new Random(12345);
+        for (int n = 0; n < 50_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0, l = 1 + rand.nextInt(8); i < l; i++) {
+                sb.append(FRAGMENTS[rand.nextInt(FRAGMENTS.length)]);
+            }
+            String str = sb.toString();
+            NumberUtils.NumberWithRange expected = AntlrNumberParser.parseNumberWithRange(str);
+            NumberUtils.NumberWithRange actual = parseNumberWithRange(str);
+            if (expected == null) {
+                assertNull(actual, str);
+            } else {
+                assertNotNull(actual, str);
+                assertEquals(expected.getNumber(), actual.getNumber(), str);
+                assertEquals(expected.getStart(), actual.getStart(), str);
+                assertEquals(expected.getEnd(), actual.getEnd(), str);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+package com.brennaswitzer.cookbook.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhraseMatcherTest {
+
+    private static String describe(List<PhraseMatcher.Match<String>> matches) {
+        return matches.stream()
+                .map(m -> m.getValue() + "@" + m.getStart() + "-" + m.getEnd())
+                .collect(Collectors.joining(", "));
+    }
+
+    @Test
+    public void singleAndMultiWord() {
+        PhraseMatcher<String> m = new PhraseMatcher<String>()
+                .add("chicken", "chicken")
+                .add("chicken thigh", "thigh")
+                .build();
+        assertEquals("chicken@1-2, thigh@1-3",
+                describe(m.findAll(Arrays.asList("cup", "chicken", "thighs"))));
+    }
+
+    @Test
+    public void overlappingPhrases() {
+        PhraseMatcher<String> m = new PhraseMatcher<String>()
+                .add("Spanish Apple Cake", "cake")
+                .add("apple", "apple")
+                .add("apple pie", "pie")
+                .build();
+        assertEquals("apple@1-2, cake@0-3",
+                describe(m.findAll(Arrays.asList("spanish", "apple", "cake"))));
+        // fall back out of a partial "apple pie"
+        assertEquals("apple@0-1, apple@1-2, pie@1-3",
+                describe(m.findAll(Arrays.asList("apple", "apple", "pie"))));
+    }
+
+    @Test
+    public void onlyLastWordIsUnpluralized() {
+        PhraseMatcher<String> m = new PhraseMatcher<String>()
+                .add("tomato paste", "paste")
+                .build();
+        assertTrue(m.findAll(Arrays.asList("tomatoes", "paste")).isEmpty());
+        assertEquals("paste@0-2",
+                describe(m.findAll(Arrays.asList("tomato", "pastes"))));
+    }
+
+    @Test
+    public void pluralAndCaseInsensitive() {
+        PhraseMatcher<String> m = new PhraseMatcher<String>()
+                .add("Tomatoes", "tomatoes")
+                .add("green  onion", "onion")
+                .build();
+        assertEquals("tomatoes@0-1",
+                describe(m.findAll(Arrays.asList("tomato"))));
+        assertEquals("tomatoes@0-1",
+                describe(m.findAll(Arrays.asList("TOMATOES,"))));
+        assertEquals("onion@1-3",
+                describe(m.findAll(Arrays.asList("3", "Green", "Onions"))));
+    }
+
+    @Test
+    public void firstValueWins() {
+        PhraseMatcher<String> m = new PhraseMatcher<String>()
+                .add("salt", "first")
+                .add("Salt", "second")
+                .build();
+        assertEquals("first@0-1",
+                describe(m.findAll(Arrays.asList("salt"))));
+    }
+
+    @Test
+    public void mustBeBuilt() {
+        PhraseMatcher<String> m = new PhraseMatcher<>();
+        assertThrows(IllegalStateException.class, () ->
+                m.findAll(Arrays.asList("salt")));
+        m.build();
+        assertThrows(IllegalStateException.class, () ->
+                m.add("salt", "salt"));
+    }
+
+}